@@ -1,17 +1,42 @@
 package com.hermnet.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hermnet.api.dto.AckRequest;
+import com.hermnet.api.dto.AckResponse;
+import com.hermnet.api.dto.BatchSendRequest;
+import com.hermnet.api.dto.MailboxSummaryResponse;
+import com.hermnet.api.dto.MessageListResponse;
+import com.hermnet.api.dto.MessageMetadata;
+import com.hermnet.api.dto.RegisterRequest;
 import com.hermnet.api.dto.SendMessageRequest;
-import com.hermnet.api.model.Message;
-import com.hermnet.api.model.User;
-import com.hermnet.api.repository.MessageRepository;
-import com.hermnet.api.repository.UserRepository;
+import com.hermnet.api.service.LiveDeliveryRegistry;
+import com.hermnet.api.service.MailboxService;
+import com.hermnet.api.service.MailboxVersions;
+import com.hermnet.api.service.PendingMailboxIndex;
+import com.hermnet.api.service.MailboxWatchRegistry;
+import com.hermnet.api.service.PacketTooLargeException;
+import com.hermnet.api.storage.PacketStoreFullException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 
 /**
  * Controller for secure message exchange.
@@ -24,16 +49,29 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MessageController {
 
-    private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
-    private final com.hermnet.api.service.NotificationService notificationService;
+    /** Header reporting the number of messages waiting in a mailbox. */
+    static final String PENDING_MESSAGES_HEADER = "X-Pending-Messages";
+
+    private static final Pattern RECIPIENT_ID = Pattern.compile(RegisterRequest.ID_PATTERN);
+
+    private static final byte[] EMPTY_PAGE = "{\"messages\":[],\"next\":null}".getBytes(StandardCharsets.UTF_8);
+
+    private final MailboxService mailboxService;
+    private final ObjectMapper objectMapper;
+    private final MailboxWatchRegistry watchRegistry;
+    private final LiveDeliveryRegistry liveDelivery;
+    private final MailboxVersions versions;
+    private final PendingMailboxIndex pendingIndex;
+
+    @Value("${hermnet.mailbox.poll-timeout:PT30S}")
+    private Duration pollTimeout;
 
     /**
      * Sends a secure message to a recipient.
      * 
      * Stores the encrypted steganographic image in the recipient's mailbox.
      * The server does not know the sender or the content.
-     * Triggers a silent "Data-Only" push notification (FCM) to the recipient
+     * A silent "Data-Only" push notification (FCM) is queued for the recipient
      * to initiate background synchronization.
      * 
      * @param request The message request containing recipient ID and stego image.
@@ -41,38 +79,394 @@ public class MessageController {
      */
     @PostMapping
     public ResponseEntity<Void> sendMessage(@Valid @RequestBody SendMessageRequest request) {
-        Message message = Message.builder()
-                .recipientHash(request.recipientId())
-                .stegoPacket(request.stegoImage())
-                .build();
+        byte[] stegoImage = request.stegoImage();
+        mailboxService.storePacket(request.recipientId(), new ByteArrayInputStream(stegoImage), stegoImage.length);
+
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Sends a secure message to a recipient as a raw binary upload.
+     * 
+     * The request body is the stego image itself ({@code application/octet-stream})
+     * and is piped into the mailbox as it is received, without Base64 decoding or
+     * buffering the whole packet. Size limits are enforced while streaming.
+     * 
+     * @param recipientId The ID of the user to receive the message.
+     * @param request     The HTTP request whose body is the stego image.
+     * @return 202 Accepted if the message is stored, 413 if it is too large.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> uploadMessage(@RequestParam String recipientId, HttpServletRequest request)
+            throws IOException {
+        validateRecipientId(recipientId);
+
+        mailboxService.storePacket(recipientId, request.getInputStream(), request.getContentLengthLong());
 
-        messageRepository.save(message);
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Sends one secure message to several recipients as a raw binary upload.
+     * 
+     * The stego image is uploaded and stored once, however many recipients
+     * there are; each recipient gets a mailbox entry referencing it and a sync
+     * notification. Intended for group conversations, where the same packet
+     * would otherwise be uploaded once per member.
+     * 
+     * @param recipientIds The IDs of the users to receive the message.
+     * @param request      The HTTP request whose body is the stego image.
+     * @return 202 Accepted if the message is stored, 413 if it is too large.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping(value = "/fanout", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> fanOutMessage(@RequestParam("recipientId") List<String> recipientIds,
+            HttpServletRequest request) throws IOException {
+        recipientIds.forEach(this::validateRecipientId);
 
-        // Trigger silent push notification
-        userRepository.findById(request.recipientId())
-                .map(User::getPushToken)
-                .ifPresent(notificationService::sendSyncNotification);
+        mailboxService.storeSharedPacket(recipientIds, request.getInputStream(), request.getContentLengthLong());
+
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Sends several secure messages, each to its own recipient, in one request.
+     * 
+     * All messages are stored in a single transaction and every recipient
+     * receives one sync notification, however many of the messages are
+     * addressed to them.
+     * Intended for clients flushing an outbox.
+     * 
+     * @param request The messages, each with a recipient ID and stego image.
+     * @return 202 Accepted if all messages are stored, 413 if one is too large.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> sendMessages(@Valid @RequestBody BatchSendRequest request) {
+        mailboxService.storePackets(request.messages());
 
         return ResponseEntity.accepted().build();
     }
 
     /**
-     * Retrieves messages for a user.
+     * Retrieves a page of messages for a user.
      * 
-     * Returns a list of steganographic images intended for the user,
-     * ordered by arrival time (newest first).
+     * Returns the steganographic images that arrived after the given cursor,
+     * ordered by arrival time (oldest first), together with the cursor for the
+     * next page. The JSON is written as packets are read, see
+     * {@link MailboxService#writePackets(String, long, Integer, JsonGenerator)}.
      * 
-     * @param myId The user's ID hash to retrieve messages for.
-     * @return List of stego images (as byte arrays/Base64 strings).
+     * The response carries the mailbox version as its {@code ETag}; a request
+     * whose {@code If-None-Match} matches the current version is answered with
+     * 304 Not Modified without reading the mailbox. Mailboxes that the
+     * {@link PendingMailboxIndex} knows to be empty are answered with an empty
+     * page, also without a query.
+     * 
+     * @param myId       The user's ID hash to retrieve messages for.
+     * @param after      The ID of the last message already received (0 to start
+     *                   from the oldest).
+     * @param limit      The maximum number of messages to return (server default
+     *                   if absent).
+     * @param webRequest The request, for the conditional headers.
+     * @return The messages (IDs and Base64 stego images) and the next cursor, or
+     *         304 if the mailbox has not changed.
      */
     @GetMapping
-    public ResponseEntity<List<byte[]>> getMessages(@RequestParam String myId) {
-        List<Message> messages = messageRepository.findByRecipientHashOrderByCreatedAtDesc(myId);
+    public ResponseEntity<StreamingResponseBody> getMessages(@RequestParam String myId,
+            @RequestParam(defaultValue = "0") long after, @RequestParam(required = false) Integer limit,
+            WebRequest webRequest) {
+        validateLimit(limit);
+        String etag = versions.etag(myId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        boolean empty = !pendingIndex.mayHaveMail(myId);
+        StreamingResponseBody body = out -> {
+            if (empty) {
+                out.write(EMPTY_PAGE);
+                return;
+            }
+            try (JsonGenerator json = objectMapper.createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                mailboxService.writePackets(myId, after, limit, json);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .body(body);
+    }
+
+    /**
+     * Checks whether the authenticated user has messages waiting, without
+     * reading the mailbox.
+     * 
+     * @param principal The authenticated user.
+     * @return 204 No Content if the mailbox is empty, otherwise 200 with an
+     *         upper bound of the number of waiting messages in the
+     *         {@code X-Pending-Messages} header when it is known. Both carry the
+     *         mailbox version as {@code ETag}.
+     */
+    @RequestMapping(method = RequestMethod.HEAD)
+    public ResponseEntity<Void> checkMessages(Principal principal) {
+        String myId = principal.getName();
+        String etag = versions.etag(myId);
+        if (!pendingIndex.mayHaveMail(myId)) {
+            return ResponseEntity.noContent().eTag(etag).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        int count = pendingIndex.count(myId);
+        if (count > 0) {
+            response.header(PENDING_MESSAGES_HEADER, Integer.toString(count));
+        }
+        return response.build();
+    }
+
+    /**
+     * Streams a page of the authenticated user's messages as binary frames.
+     * 
+     * Unlike {@link #getMessages(String, long, Integer, WebRequest)}, packets
+     * are written to the response without Base64 encoding. See
+     * {@link MailboxService} for the frame layout; the ID of the last frame is
+     * the cursor for the next page. Conditional requests are answered the same
+     * way.
+     * 
+     * @param after      The ID of the last message already received (0 to start
+     *                   from the oldest).
+     * @param limit      The maximum number of messages to return (server default
+     *                   if absent).
+     * @param webRequest The request, for the conditional headers.
+     * @param principal  The authenticated user, whose ID hash is the mailbox.
+     * @return An octet-stream body of length-prefixed frames (oldest first), or
+     *         304 if the mailbox has not changed.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMessages(@RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit, WebRequest webRequest, Principal principal) {
+        validateLimit(limit);
+        String myId = principal.getName();
+        String etag = versions.etag(myId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        boolean empty = !pendingIndex.mayHaveMail(myId);
+        StreamingResponseBody body = out -> {
+            if (!empty) {
+                mailboxService.streamMailbox(myId, after, limit, out);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .eTag(etag)
+                .body(body);
+    }
+
+    /**
+     * Leases a page of the authenticated user's messages and streams them as
+     * binary frames.
+     * 
+     * The returned messages are hidden from other leased syncs until they are
+     * acknowledged with {@link #acknowledgeMessages(AckRequest, Principal)} or
+     * their visibility timeout expires, after which they are delivered again.
+     * Parallel or retried syncs therefore do not download the same packets
+     * twice. The frame layout is the same as for
+     * {@link #streamMessages(long, Integer, WebRequest, Principal)}; fewer frames
+     * than the limit means no more messages are visible.
+     * 
+     * @param limit     The maximum number of messages to lease (server default
+     *                  if absent).
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return An octet-stream body of length-prefixed frames (oldest first).
+     */
+    @PostMapping(value = "/lease", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> leaseMessages(@RequestParam(required = false) Integer limit,
+            Principal principal) {
+        validateLimit(limit);
+        String recipientHash = principal.getName();
+
+        boolean empty = !pendingIndex.mayHaveMail(recipientHash);
+        StreamingResponseBody body = out -> {
+            if (!empty) {
+                mailboxService.leaseMailbox(recipientHash, limit, out);
+            }
+        };
 
-        List<byte[]> images = messages.stream()
-                .map(Message::getStegoPacket)
-                .collect(Collectors.toList());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    /**
+     * Lists a page of the authenticated user's messages without their content.
+     * 
+     * Returns only the ID, arrival time and size of each message, so checking
+     * for new mail never transfers packets. The packets can then be fetched
+     * individually, and in parallel, with {@link #getMessage(long, Principal)}.
+     * 
+     * @param after     The ID of the last message already listed (0 to start
+     *                  from the oldest).
+     * @param limit     The maximum number of messages to return (server default
+     *                  if absent).
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The message metadata (oldest first) and the next cursor.
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<MessageListResponse> listMessages(@RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit, Principal principal) {
+        return ResponseEntity.ok(mailboxService.listMessages(principal.getName(), after, limit));
+    }
+
+    /**
+     * Long-polls for new messages for the authenticated user.
+     * 
+     * Answers like {@link #listMessages(long, Integer, Principal)} when there are
+     * messages after the cursor. Otherwise the request is parked without
+     * holding a servlet thread and completed as soon as a packet for the user
+     * is stored, or with an empty page once the poll timeout expires.
+     * 
+     * @param after     The ID of the last message already listed (0 to start
+     *                  from the oldest).
+     * @param limit     The maximum number of messages to return (server default
+     *                  if absent).
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The message metadata (oldest first) and the next cursor.
+     */
+    @GetMapping("/poll")
+    public DeferredResult<MessageListResponse> pollMessages(@RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit, Principal principal) {
+        validateLimit(limit);
+        String myId = principal.getName();
+        DeferredResult<MessageListResponse> result = new DeferredResult<>(pollTimeout.toMillis(),
+                () -> new MessageListResponse(List.of(), null));
+
+        // Watch before looking, so a packet stored in between is not missed
+        MailboxWatchRegistry.Watch watch = watchRegistry.watch(myId, () -> {
+            try {
+                result.setResult(mailboxService.listMessages(myId, after, limit));
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        });
+        result.onCompletion(watch::cancel);
+
+        MessageListResponse page = mailboxService.listMessages(myId, after, limit);
+        if (!page.messages().isEmpty()) {
+            result.setResult(page);
+        }
+        return result;
+    }
+
+    /**
+     * Opens a live delivery channel for the authenticated user.
+     * 
+     * The response is a Server-Sent Events stream with a {@code message} event
+     * (message ID and size) for each packet stored for the user while the
+     * connection is open. Events are not replayed: after reconnecting, clients
+     * catch up with a sync from their last cursor.
+     * 
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The event stream.
+     */
+    @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter liveMessages(Principal principal) {
+        return liveDelivery.connect(principal.getName());
+    }
+
+    /**
+     * Downloads the stego image of a single message of the authenticated user.
+     * 
+     * @param messageId The ID of the message.
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The raw stego image, or 404 if the user has no such message.
+     */
+    @GetMapping(value = "/{messageId:\\d+}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> getMessage(@PathVariable long messageId, Principal principal) {
+        String recipientHash = principal.getName();
+        MessageMetadata metadata = mailboxService.findMessage(recipientHash, messageId).orElse(null);
+        if (metadata == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StreamingResponseBody body = out -> mailboxService.writePacket(recipientHash, messageId, out);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM);
+        if (metadata.size() != null) {
+            response.contentLength(metadata.size());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Summarizes the authenticated user's mailbox: how many messages are
+     * waiting, their total size and when the oldest one arrived.
+     * 
+     * Served from counters maintained on every store and acknowledgement, so
+     * neither the mailbox nor any packet is read.
+     * 
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The mailbox summary.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<MailboxSummaryResponse> summarizeMessages(Principal principal) {
+        return ResponseEntity.ok(mailboxService.summarize(principal.getName()));
+    }
+
+    /**
+     * Acknowledges delivered messages, deleting them from the authenticated
+     * user's mailbox.
+     * 
+     * Takes either a list of message IDs or a high-water mark ({@code upTo}),
+     * usually the last cursor of a completed sync. Later syncs then only
+     * transfer messages that arrived since.
+     * 
+     * @param request   The IDs or high-water mark to acknowledge.
+     * @param principal The authenticated user, whose ID hash is the mailbox.
+     * @return The number of messages deleted.
+     */
+    @PostMapping("/ack")
+    public ResponseEntity<AckResponse> acknowledgeMessages(@Valid @RequestBody AckRequest request,
+            Principal principal) {
+        int deleted = mailboxService.acknowledge(principal.getName(), request.messageIds(), request.upTo());
+
+        return ResponseEntity.ok(new AckResponse(deleted));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequests(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(PacketTooLargeException.class)
+    public ResponseEntity<String> handlePacketTooLarge(PacketTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
+    @ExceptionHandler(PacketStoreFullException.class)
+    public ResponseEntity<String> handlePacketStoreFull(PacketStoreFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
 
-        return ResponseEntity.ok(images);
+    /**
+     * Rejects an invalid page limit before the response is committed, which
+     * happens as soon as a streaming body starts writing.
+     */
+    private void validateLimit(Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+    }
+
+    /**
+     * Rejects a recipient ID that is not a well-formed user ID. Recipient IDs
+     * end up in mailbox event payloads, so nothing else may get through.
+     */
+    private void validateRecipientId(String recipientId) {
+        if (!RECIPIENT_ID.matcher(recipientId).matches()) {
+            throw new IllegalArgumentException("Recipient ID is invalid");
+        }
     }
 }
@@ -0,0 +1,23 @@
+package com.hermnet.api.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+/**
+ * DTO for acknowledging delivered messages, so that they are deleted from the
+ * mailbox.
+ *
+ * Exactly one of the fields must be given.
+ *
+ * @param messageIds The IDs of the messages to acknowledge.
+ * @param upTo       A high-water mark: every message up to and including this
+ *                   ID is acknowledged.
+ */
+public record AckRequest(
+        @Size(min = 1, max = 1000, message = "Between 1 and 1000 message IDs may be acknowledged at once") List<@NotNull(message = "Message IDs cannot be null") Long> messageIds,
+
+        @Positive(message = "High-water mark must be positive") Long upTo) {
+}
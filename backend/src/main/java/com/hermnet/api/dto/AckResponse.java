@@ -0,0 +1,10 @@
+package com.hermnet.api.dto;
+
+/**
+ * DTO for the result of an acknowledgement.
+ *
+ * @param deleted The number of messages removed from the mailbox.
+ */
+public record AckResponse(
+        int deleted) {
+}
@@ -0,0 +1,17 @@
+package com.hermnet.api.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * DTO for sending several secure messages in one request.
+ *
+ * @param messages The messages to send, each with its own recipient and stego
+ *                 image.
+ */
+public record BatchSendRequest(
+        @NotNull(message = "Messages are required") @Size(min = 1, max = 100, message = "Between 1 and 100 messages may be sent at once") List<@Valid @NotNull(message = "Messages cannot be null") SendMessageRequest> messages) {
+}
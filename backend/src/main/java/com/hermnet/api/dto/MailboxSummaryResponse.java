@@ -0,0 +1,17 @@
+package com.hermnet.api.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO summarizing the content of a mailbox.
+ *
+ * @param messages        The number of messages waiting.
+ * @param bytes           The total size of their stego images in bytes.
+ * @param oldestCreatedAt The arrival time of the oldest message, or null if
+ *                        the mailbox is empty.
+ */
+public record MailboxSummaryResponse(
+        long messages,
+        long bytes,
+        LocalDateTime oldestCreatedAt) {
+}
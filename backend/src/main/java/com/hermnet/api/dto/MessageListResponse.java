@@ -0,0 +1,15 @@
+package com.hermnet.api.dto;
+
+import java.util.List;
+
+/**
+ * DTO for one page of a mailbox listing.
+ *
+ * @param messages The metadata of the messages in the page, oldest first.
+ * @param next     The cursor for the following page, or null once the mailbox
+ *                 has been read to the end.
+ */
+public record MessageListResponse(
+        List<MessageMetadata> messages,
+        Long next) {
+}
@@ -0,0 +1,16 @@
+package com.hermnet.api.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO describing a mailbox message without its content.
+ *
+ * @param messageId The ID of the message, used to fetch its packet.
+ * @param createdAt The timestamp when the message was stored.
+ * @param size      The size of the stego image in bytes, or null if unknown.
+ */
+public record MessageMetadata(
+        long messageId,
+        LocalDateTime createdAt,
+        Long size) {
+}
@@ -0,0 +1,12 @@
+package com.hermnet.api.dto;
+
+/**
+ * DTO for the live notification sent when a message arrives in a mailbox.
+ *
+ * @param messageId The ID of the new message, used to fetch its packet.
+ * @param size      The size of the stego image in bytes.
+ */
+public record NewMessageEvent(
+        long messageId,
+        long size) {
+}
@@ -16,10 +16,13 @@ import jakarta.validation.constraints.Pattern;
  * @param pushToken Optional push notification token for the user.
  */
 public record RegisterRequest(
-        @NotBlank(message = "El ID es obligatorio") @Pattern(regexp = "^HNET-[A-Za-z0-9]{5,}$", message = "El ID debe empezar por HNET- y tener caracteres alfanuméricos") String id,
+        @NotBlank(message = "El ID es obligatorio") @Pattern(regexp = RegisterRequest.ID_PATTERN, message = "El ID debe empezar por HNET- y tener caracteres alfanuméricos") String id,
 
         @NotBlank(message = "La clave pública es obligatoria") String publicKey,
 
         String pushToken 
 ) {
+
+    /** Format of a user ID: "HNET-" followed by at least 5 alphanumeric characters. */
+    public static final String ID_PATTERN = "^HNET-[A-Za-z0-9]{5,}$";
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.hermnet.api.events;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Default event bus, delivering events to the listeners of this node only.
+ *
+ * Suitable for a single API node, edge relays and tests.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.event-bus.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryMailboxEventBus implements MailboxEventBus {
+
+    private final List<Consumer<MailboxEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(MailboxEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deliver(event);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<MailboxEvent> listener) {
+        listeners.add(listener);
+    }
+
+    private void deliver(MailboxEvent event) {
+        for (Consumer<MailboxEvent> listener : listeners) {
+            listener.accept(event);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.hermnet.api.events;
+
+/**
+ * Event published when the content of a mailbox changes.
+ *
+ * @param type          What changed.
+ * @param recipientHash The hashed ID of the recipient.
+ * @param messageId     The ID of the new message, or 0 for acknowledgements.
+ * @param size          The size of the new packet in bytes, or 0 for
+ *                      acknowledgements.
+ * @param count         The number of messages added or deleted.
+ */
+public record MailboxEvent(Type type, String recipientHash, long messageId, long size, int count) {
+
+    /**
+     * The kind of mailbox change.
+     */
+    public enum Type {
+        /** A packet was stored in the mailbox. */
+        STORED,
+        /** Messages were acknowledged and deleted from the mailbox. */
+        ACKNOWLEDGED
+    }
+
+    /**
+     * Creates the event for a newly stored packet.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param messageId     The ID of the new message.
+     * @param size          The size of the packet in bytes.
+     * @return The event.
+     */
+    public static MailboxEvent stored(String recipientHash, long messageId, long size) {
+        return new MailboxEvent(Type.STORED, recipientHash, messageId, size, 1);
+    }
+
+    /**
+     * Creates the event for acknowledged messages.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param count         The number of deleted messages.
+     * @return The event.
+     */
+    public static MailboxEvent acknowledged(String recipientHash, int count) {
+        return new MailboxEvent(Type.ACKNOWLEDGED, recipientHash, 0, 0, count);
+    }
+}
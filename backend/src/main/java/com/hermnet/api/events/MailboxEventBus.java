@@ -0,0 +1,46 @@
+package com.hermnet.api.events;
+
+import java.util.function.Consumer;
+
+/**
+ * Distributes mailbox events to the listeners of every API node.
+ *
+ * Events are published from inside the transaction that stores the packet and
+ * are only delivered once it commits, so a woken client always finds the new
+ * message. Delivery is best effort: listeners must tolerate missed events,
+ * e.g. while a node reconnects to the bus.
+ *
+ * The active backend is selected with the {@code hermnet.event-bus.type}
+ * property.
+ */
+public interface MailboxEventBus {
+
+    /**
+     * Publishes an event. Inside a transaction, delivery is deferred until it
+     * commits and dropped if it rolls back.
+     *
+     * @param event The event to publish.
+     */
+    void publish(MailboxEvent event);
+
+    /**
+     * Registers a listener for the events of all nodes, including this one.
+     *
+     * Listeners are called on the bus's delivery thread and must not block.
+     *
+     * @param listener The listener.
+     */
+    void subscribe(Consumer<MailboxEvent> listener);
+
+    /**
+     * Registers a listener called when the bus has reconnected after a
+     * failure. Events published meanwhile are lost, so state built from events
+     * has to be discarded or rebuilt.
+     *
+     * Backends that never lose events never call it.
+     *
+     * @param listener The listener.
+     */
+    default void onReconnect(Runnable listener) {
+    }
+}
@@ -0,0 +1,265 @@
+package com.hermnet.api.events;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Event bus shared by all API nodes through PostgreSQL {@code LISTEN/NOTIFY}.
+ *
+ * The events of a transaction are collected and sent with as few
+ * {@code pg_notify} calls as the payload limit allows, just before it commits.
+ * PostgreSQL only delivers notifications once the transaction commits, so a
+ * rolled back packet never wakes anyone.
+ *
+ * Each node keeps one dedicated connection listening on the channel and
+ * delivers every notification, its own included, to the local listeners. The
+ * connection is re-established after a failure; events sent meanwhile are
+ * lost, which clients absorb through their poll timeouts and sync cursors, and
+ * the reconnect listeners are told so they can discard what they derived from
+ * the events.
+ *
+ * Each payload is a JSON array of events:
+ *
+ * <pre>
+ * [{"type": "STORED", "recipientHash": "...", "messageId": 42, "size": 512, "count": 1}, ...]
+ * </pre>
+ *
+ * Recipient hashes come from clients, so they are JSON-escaped rather than
+ * delimited, and a payload that does not parse is dropped as a whole.
+ *
+ * Enabled with {@code hermnet.event-bus.type=postgres}.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.event-bus.type", havingValue = "postgres")
+@RequiredArgsConstructor
+@Slf4j
+public class PostgresMailboxEventBus implements MailboxEventBus {
+
+    static final String CHANNEL = "hermnet_mailbox";
+
+    /** Stays below the 8000 byte limit of a notification payload. */
+    static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, true);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${hermnet.event-bus.postgres.poll-interval:PT1S}")
+    private Duration pollInterval;
+
+    @Value("${hermnet.event-bus.postgres.retry-delay:PT5S}")
+    private Duration retryDelay;
+
+    private final List<Consumer<MailboxEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    /**
+     * Starts listening on the notification channel.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        listenerThread = Thread.ofPlatform().daemon().name("mailbox-event-listener").start(this::listen);
+    }
+
+    /**
+     * Stops listening and releases the listening connection.
+     *
+     * @throws InterruptedException If interrupted while waiting for the
+     *                              listener to stop.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listenerThread.interrupt();
+        listenerThread.join(pollInterval.multipliedBy(2).toMillis());
+    }
+
+    @Override
+    public void publish(MailboxEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(List.of(event));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<MailboxEvent> pending = (List<MailboxEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<MailboxEvent> batch = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Still inside the transaction, so the notifications commit with it
+                    send(batch);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PostgresMailboxEventBus.this);
+                }
+            });
+            pending = batch;
+        }
+        pending.add(event);
+    }
+
+    @Override
+    public void subscribe(Consumer<MailboxEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void onReconnect(Runnable listener) {
+        reconnectListeners.add(listener);
+    }
+
+    private void send(List<MailboxEvent> events) {
+        for (String payload : encode(events)) {
+            jdbcTemplate.query(NOTIFY_SQL, (ResultSetExtractor<Void>) rs -> null, CHANNEL, payload);
+        }
+    }
+
+    private void listen() {
+        boolean connected = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for mailbox events on channel {}", CHANNEL);
+                if (connected) {
+                    reconnected();
+                }
+                connected = true;
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollInterval.toMillis());
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        decode(notification.getParameter()).forEach(this::deliver);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Mailbox event listener failed, reconnecting in {}", retryDelay, e);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void reconnected() {
+        for (Runnable listener : reconnectListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn("Mailbox event reconnect listener threw", e);
+            }
+        }
+    }
+
+    private void deliver(MailboxEvent event) {
+        for (Consumer<MailboxEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.warn("Mailbox event listener threw", e);
+            }
+        }
+    }
+
+    /**
+     * Splits events into as few payloads as the notification size limit allows.
+     */
+    static List<String> encode(List<MailboxEvent> events) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder();
+        int payloadBytes = 0;
+        for (MailboxEvent event : events) {
+            String element;
+            try {
+                element = JSON.writeValueAsString(event);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot encode mailbox event", e);
+            }
+            int elementBytes = element.getBytes(StandardCharsets.UTF_8).length;
+            // One byte for the opening bracket or separating comma, one for the closing bracket
+            if (payloadBytes > 0 && payloadBytes + elementBytes + 2 > MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.append(']').toString());
+                payload.setLength(0);
+                payloadBytes = 0;
+            }
+            payload.append(payloadBytes == 0 ? '[' : ',').append(element);
+            payloadBytes += elementBytes + 1;
+        }
+        if (payloadBytes > 0) {
+            payloads.add(payload.append(']').toString());
+        }
+        return payloads;
+    }
+
+    /**
+     * Parses a payload written by {@link #encode(List)}. A payload that does
+     * not parse, or contains an incomplete event, is dropped as a whole.
+     */
+    static List<MailboxEvent> decode(String payload) {
+        MailboxEvent[] events;
+        try {
+            events = JSON.readValue(payload, MailboxEvent[].class);
+        } catch (JsonProcessingException e) {
+            log.warn("Dropping malformed mailbox event payload");
+            return List.of();
+        }
+        for (MailboxEvent event : events) {
+            if (event == null || event.type() == null || event.recipientHash() == null) {
+                log.warn("Dropping malformed mailbox event payload");
+                return List.of();
+            }
+        }
+        return List.of(events);
+    }
+}
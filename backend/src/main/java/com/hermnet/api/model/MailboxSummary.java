@@ -0,0 +1,48 @@
+package com.hermnet.api.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregate figures of a recipient's mailbox.
+ * 
+ * Maintained incrementally whenever a packet is stored or acknowledged, so the
+ * size of a mailbox can be reported without scanning the mailbox table or
+ * reading any packet.
+ */
+@Entity
+@Table(name = "mailbox_summary")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MailboxSummary {
+
+    /**
+     * The hashed ID of the recipient owning the mailbox.
+     */
+    @Id
+    @Column(name = "recipient_hash", length = 64)
+    private String recipientHash;
+
+    /**
+     * Number of messages waiting in the mailbox.
+     */
+    @Column(name = "message_count", nullable = false)
+    private long messageCount;
+
+    /**
+     * Total size of the waiting packets in bytes.
+     */
+    @Column(name = "total_bytes", nullable = false)
+    private long totalBytes;
+
+    /**
+     * Arrival time of the oldest waiting message, or null if the mailbox is
+     * empty.
+     */
+    @Column(name = "oldest_created_at")
+    private LocalDateTime oldestCreatedAt;
+}
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
  * plausible deniability and minimize metadata leakage.
  */
 @Entity
-@Table(name = "mailbox", indexes = { @Index(name = "idx_mailbox_recipient", columnList = "recipient_hash") })
+@Table(name = "mailbox", indexes = {
+        @Index(name = "idx_mailbox_recipient_message", columnList = "recipient_hash, message_id") })
 @Getter
 @Setter
 @AllArgsConstructor
@@ -44,11 +45,42 @@ public class Message {
      * 
      * This blob typically contains an image or data structure where the actual
      * encrypted message is hidden. The server treats this as opaque data.
+     * Only populated when the packet is kept in the mailbox row itself; packets
+     * held by an external {@code PacketStore} are referenced by
+     * {@link #packetRef} instead.
      */
     @Lob
-    @Column(name = "stego_packet", nullable = false)
+    @Column(name = "stego_packet")
     private byte[] stegoPacket;
 
+    /**
+     * Reference to the packet in an external packet store (e.g. a relative file
+     * path), or null when the packet is stored in {@link #stegoPacket}.
+     */
+    @Column(name = "packet_ref", length = 128)
+    private String packetRef;
+
+    /**
+     * Size of the packet in bytes, recorded at upload time so that it can be
+     * reported without reading the packet.
+     */
+    @Column(name = "packet_size")
+    private Long packetSize;
+
+    /**
+     * The {@link SharedPacket} counting the mailbox entries that reference the
+     * same packet, or null if the packet belongs to this entry alone.
+     */
+    @Column(name = "shared_packet_id")
+    private Long sharedPacketId;
+
+    /**
+     * End of the current delivery lease, or null if the message has never been
+     * leased. Leased syncs skip messages whose lease has not expired yet.
+     */
+    @Column(name = "leased_until")
+    private LocalDateTime leasedUntil;
+
     /**
      * Timestamp when the message was received by the server.
      */
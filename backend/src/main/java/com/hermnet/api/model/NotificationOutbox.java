@@ -0,0 +1,56 @@
+package com.hermnet.api.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * A sync notification owed to a recipient, kept until FCM has accepted it.
+ * 
+ * Written in the transaction that stores a packet, so a notification survives
+ * FCM outages and restarts. There is at most one entry per recipient: packets
+ * stored while one is pending only bump its generation, so the recipient is
+ * notified again after the pending notification went out.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        @Index(name = "idx_notification_outbox_next_attempt", columnList = "next_attempt_at") })
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NotificationOutbox {
+
+    /**
+     * The hashed ID of the recipient to notify.
+     */
+    @Id
+    @Column(name = "recipient_hash", length = 64)
+    private String recipientHash;
+
+    /**
+     * Incremented for every packet stored while the notification is pending.
+     */
+    @Column(name = "generation", nullable = false)
+    private long generation;
+
+    /**
+     * Number of times the notification has been handed to FCM.
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    /**
+     * When the notification is due to be sent, or sent again if the previous
+     * attempt has not been confirmed by then.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * When the notification was first owed.
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
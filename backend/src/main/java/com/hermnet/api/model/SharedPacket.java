@@ -0,0 +1,33 @@
+package com.hermnet.api.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Reference count of a packet shared by several mailbox entries.
+ * 
+ * A packet sent to several recipients at once is stored a single time and
+ * referenced by one mailbox entry per recipient. Each entry points to this
+ * counter, and the packet is only released when the last entry referencing it
+ * is acknowledged.
+ */
+@Entity
+@Table(name = "shared_packet")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SharedPacket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * Number of mailbox entries still referencing the packet.
+     */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+}
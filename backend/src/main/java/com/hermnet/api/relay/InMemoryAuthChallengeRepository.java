@@ -0,0 +1,64 @@
+package com.hermnet.api.relay;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.AuthChallenge;
+import com.hermnet.api.model.User;
+import com.hermnet.api.repository.AuthChallengeRepository;
+
+/**
+ * In-memory {@link AuthChallengeRepository} used by the relay profile.
+ */
+@Repository
+@Profile("relay")
+public class InMemoryAuthChallengeRepository extends InMemoryRepository<AuthChallenge, Long>
+        implements AuthChallengeRepository {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    protected Long idOf(AuthChallenge challenge) {
+        return challenge.getChallengeId();
+    }
+
+    @Override
+    protected void beforeInsert(AuthChallenge challenge) {
+        challenge.setChallengeId(sequence.incrementAndGet());
+    }
+
+    @Override
+    public void restore(AuthChallenge challenge) {
+        super.restore(challenge);
+        sequence.accumulateAndGet(challenge.getChallengeId(), Math::max);
+    }
+
+    @Override
+    public Optional<AuthChallenge> findByNonce(String nonce) {
+        return values().stream()
+                .filter(challenge -> nonce.equals(challenge.getNonce()))
+                .findFirst();
+    }
+
+    @Override
+    public void deleteByUserHash(User user) {
+        for (AuthChallenge challenge : values()) {
+            if (challenge.getUserHash().getIdHash().equals(user.getIdHash())) {
+                delete(challenge);
+            }
+        }
+    }
+
+    @Override
+    public void deleteByExpiresAtBefore(LocalDateTime expiryDate) {
+        for (AuthChallenge challenge : values()) {
+            if (challenge.getExpiresAt().isBefore(expiryDate)) {
+                delete(challenge);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.hermnet.api.relay;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.BlacklistedToken;
+import com.hermnet.api.repository.BlacklistedTokenRepository;
+
+/**
+ * In-memory {@link BlacklistedTokenRepository} used by the relay profile.
+ */
+@Repository
+@Profile("relay")
+public class InMemoryBlacklistedTokenRepository extends InMemoryRepository<BlacklistedToken, String>
+        implements BlacklistedTokenRepository {
+
+    @Override
+    protected String idOf(BlacklistedToken token) {
+        return token.getJti();
+    }
+}
@@ -0,0 +1,68 @@
+package com.hermnet.api.relay;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.MailboxSummary;
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MailboxSummaryRepository;
+import com.hermnet.api.repository.MessageRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * In-memory {@link MailboxSummaryRepository} used by the relay profile.
+ *
+ * Summaries are not part of the relay snapshot; they are rebuilt from the
+ * restored messages.
+ */
+@Repository
+@Profile("relay")
+@RequiredArgsConstructor
+public class InMemoryMailboxSummaryRepository extends InMemoryRepository<MailboxSummary, String>
+        implements MailboxSummaryRepository {
+
+    private final MessageRepository messageRepository;
+
+    @Override
+    protected String idOf(MailboxSummary summary) {
+        return summary.getRecipientHash();
+    }
+
+    @Override
+    public synchronized void recordStored(String recipientHash, long size, LocalDateTime createdAt) {
+        MailboxSummary summary = findById(recipientHash).orElse(null);
+        if (summary == null) {
+            save(MailboxSummary.builder()
+                    .recipientHash(recipientHash)
+                    .messageCount(1)
+                    .totalBytes(size)
+                    .oldestCreatedAt(createdAt)
+                    .build());
+            return;
+        }
+        summary.setMessageCount(summary.getMessageCount() + 1);
+        summary.setTotalBytes(summary.getTotalBytes() + size);
+        if (summary.getOldestCreatedAt() == null || createdAt.isBefore(summary.getOldestCreatedAt())) {
+            summary.setOldestCreatedAt(createdAt);
+        }
+    }
+
+    @Override
+    public synchronized void recordRemoved(String recipientHash, long count, long bytes) {
+        MailboxSummary summary = findById(recipientHash).orElse(null);
+        if (summary == null) {
+            return;
+        }
+        summary.setMessageCount(Math.max(summary.getMessageCount() - count, 0));
+        summary.setTotalBytes(Math.max(summary.getTotalBytes() - bytes, 0));
+        try (Stream<Message> oldest = messageRepository
+                .streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(recipientHash, 0, Limit.of(1))) {
+            summary.setOldestCreatedAt(oldest.findFirst().map(Message::getCreatedAt).orElse(null));
+        }
+    }
+}
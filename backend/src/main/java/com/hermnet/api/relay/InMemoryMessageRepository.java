@@ -0,0 +1,323 @@
+package com.hermnet.api.relay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.AcknowledgedPacket;
+import com.hermnet.api.repository.MailboxCount;
+import com.hermnet.api.repository.MessageRepository;
+import com.hermnet.api.repository.MessageSummary;
+
+/**
+ * In-memory {@link MessageRepository} used by the relay profile.
+ *
+ * Besides the ID map, messages are indexed per recipient in a map sorted by
+ * message ID, so a mailbox is listed or paged without scanning other
+ * recipients. IDs are assigned in insertion order, so this is also the order
+ * of arrival.
+ *
+ * Shared packets are reference counted in memory. The snapshot stores each
+ * message with its own copy of the packet, so sharing does not survive a
+ * restart.
+ */
+@Repository
+@Profile("relay")
+public class InMemoryMessageRepository extends InMemoryRepository<Message, Long> implements MessageRepository {
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, NavigableMap<Long, Message>> mailboxes = new ConcurrentHashMap<>();
+
+    private final AtomicLong sharedSequence = new AtomicLong();
+    private final Map<Long, AtomicInteger> sharedRefCounts = new ConcurrentHashMap<>();
+
+    @Override
+    protected Long idOf(Message message) {
+        return message.getMessageId();
+    }
+
+    @Override
+    protected void beforeInsert(Message message) {
+        message.setMessageId(sequence.incrementAndGet());
+        if (message.getCreatedAt() == null) {
+            message.setCreatedAt(LocalDateTime.now());
+        }
+    }
+
+    @Override
+    protected void afterStore(Message message, Message previous) {
+        if (previous != null && previous != message) {
+            afterRemove(previous);
+        }
+        mailboxes.compute(message.getRecipientHash(), (recipientHash, mailbox) -> {
+            NavigableMap<Long, Message> entries = mailbox != null ? mailbox : new ConcurrentSkipListMap<>();
+            entries.put(message.getMessageId(), message);
+            return entries;
+        });
+    }
+
+    @Override
+    protected void afterRemove(Message message) {
+        mailboxes.computeIfPresent(message.getRecipientHash(), (recipientHash, mailbox) -> {
+            mailbox.remove(message.getMessageId(), message);
+            return mailbox.isEmpty() ? null : mailbox;
+        });
+    }
+
+    @Override
+    public void restore(Message message) {
+        super.restore(message);
+        sequence.accumulateAndGet(message.getMessageId(), Math::max);
+    }
+
+    @Override
+    public List<Message> findByRecipientHashOrderByCreatedAtDesc(String recipientHash) {
+        NavigableMap<Long, Message> mailbox = mailboxes.get(recipientHash);
+        return mailbox != null ? new ArrayList<>(mailbox.descendingMap().values()) : new ArrayList<>();
+    }
+
+    @Override
+    public Stream<Message> streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(String recipientHash,
+            long after, Limit limit) {
+        NavigableMap<Long, Message> mailbox = mailboxes.get(recipientHash);
+        if (mailbox == null) {
+            return Stream.empty();
+        }
+        Stream<Message> page = mailbox.tailMap(after, false).values().stream();
+        return limit.isLimited() ? page.limit(limit.max()) : page;
+    }
+
+    @Override
+    public Stream<Message> streamByMessageIdInOrderByMessageIdAsc(Collection<Long> messageIds) {
+        return findAllById(messageIds).stream()
+                .sorted(Comparator.comparing(Message::getMessageId));
+    }
+
+    @Override
+    public List<MessageSummary> findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(String recipientHash,
+            long after, Limit limit) {
+        try (Stream<Message> page = streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(recipientHash,
+                after, limit)) {
+            return page.map(Summary::of).toList();
+        }
+    }
+
+    @Override
+    public Optional<MessageSummary> findByMessageIdAndRecipientHash(long messageId, String recipientHash) {
+        return findById(messageId)
+                .filter(message -> message.getRecipientHash().equals(recipientHash))
+                .map(Summary::of);
+    }
+
+    @Override
+    public List<MailboxCount> countByRecipient() {
+        List<MailboxCount> counts = new ArrayList<>();
+        mailboxes.forEach((recipientHash, mailbox) -> counts.add(new Count(recipientHash, mailbox.size())));
+        return counts;
+    }
+
+    @Override
+    public List<String> findDistinctPacketRefs() {
+        return values().stream()
+                .map(Message::getPacketRef)
+                .filter(ref -> ref != null)
+                .distinct()
+                .toList();
+    }
+
+    @Override
+    public void deleteByCreatedAtBefore(LocalDateTime expiryDate) {
+        for (Message message : values()) {
+            if (message.getCreatedAt().isBefore(expiryDate)) {
+                delete(message);
+            }
+        }
+    }
+
+    @Override
+    public long insertStreaming(String recipientHash, InputStream packet) {
+        byte[] bytes;
+        try {
+            bytes = packet.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Message message = Message.builder()
+                .recipientHash(recipientHash)
+                .stegoPacket(bytes)
+                .packetSize((long) bytes.length)
+                .build();
+
+        return save(message).getMessageId();
+    }
+
+    @Override
+    public List<Long> insertStreaming(List<String> recipientHashes, List<InputStream> packets) {
+        List<Long> ids = new ArrayList<>(recipientHashes.size());
+        for (int i = 0; i < recipientHashes.size(); i++) {
+            ids.add(insertStreaming(recipientHashes.get(i), packets.get(i)));
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Long> shareWith(long messageId, List<String> recipientHashes) {
+        Message original = getReferenceById(messageId);
+        long sharedId = sharedSequence.incrementAndGet();
+        sharedRefCounts.put(sharedId, new AtomicInteger(recipientHashes.size() + 1));
+        original.setSharedPacketId(sharedId);
+
+        List<Long> ids = new ArrayList<>();
+        for (String recipientHash : recipientHashes) {
+            Message copy = Message.builder()
+                    .recipientHash(recipientHash)
+                    .stegoPacket(original.getStegoPacket())
+                    .packetRef(original.getPacketRef())
+                    .packetSize(original.getPacketSize())
+                    .sharedPacketId(sharedId)
+                    .createdAt(original.getCreatedAt())
+                    .build();
+            ids.add(save(copy).getMessageId());
+        }
+        return ids;
+    }
+
+    @Override
+    public void detach(Message message) {
+        // Entities are not tracked, there is nothing to release
+    }
+
+    /**
+     * Leases under the repository lock, which stands in for the row locks of
+     * the database implementation.
+     */
+    @Override
+    public synchronized List<Long> lease(String recipientHash, int limit, LocalDateTime now, LocalDateTime until) {
+        NavigableMap<Long, Message> mailbox = mailboxes.get(recipientHash);
+        List<Long> leased = new ArrayList<>();
+        if (mailbox == null) {
+            return leased;
+        }
+        for (Message message : mailbox.values()) {
+            if (leased.size() == limit) {
+                break;
+            }
+            LocalDateTime leasedUntil = message.getLeasedUntil();
+            if (leasedUntil == null || !leasedUntil.isAfter(now)) {
+                message.setLeasedUntil(until);
+                leased.add(message.getMessageId());
+            }
+        }
+        return leased;
+    }
+
+    @Override
+    public List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, long upTo) {
+        NavigableMap<Long, Message> mailbox = mailboxes.get(recipientHash);
+        if (mailbox == null) {
+            return new ArrayList<>();
+        }
+        return removeAll(new ArrayList<>(mailbox.headMap(upTo, true).values()));
+    }
+
+    @Override
+    public List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, Collection<Long> messageIds) {
+        NavigableMap<Long, Message> mailbox = mailboxes.get(recipientHash);
+        if (mailbox == null) {
+            return new ArrayList<>();
+        }
+        List<Message> acknowledged = new ArrayList<>();
+        for (Long messageId : messageIds) {
+            Message message = mailbox.get(messageId);
+            if (message != null) {
+                acknowledged.add(message);
+            }
+        }
+        return removeAll(acknowledged);
+    }
+
+    private List<AcknowledgedPacket> removeAll(List<Message> messages) {
+        List<AcknowledgedPacket> packets = new ArrayList<>();
+        for (Message message : messages) {
+            // Only report packets this call removed, so a concurrent
+            // acknowledgement cannot release the same packet twice
+            if (remove(message)) {
+                long size = message.getPacketSize() != null ? message.getPacketSize() : 0;
+                packets.add(new AcknowledgedPacket(release(message) ? message.getPacketRef() : null, size));
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Drops a removed message's reference to its packet.
+     *
+     * @return Whether no other message references the packet any more.
+     */
+    private boolean release(Message message) {
+        Long sharedId = message.getSharedPacketId();
+        if (sharedId == null) {
+            return true;
+        }
+        AtomicInteger refCount = sharedRefCounts.get(sharedId);
+        if (refCount == null || refCount.decrementAndGet() <= 0) {
+            sharedRefCounts.remove(sharedId);
+            return true;
+        }
+        return false;
+    }
+
+    private record Summary(Long messageId, LocalDateTime createdAt, Long packetSize) implements MessageSummary {
+
+        private static MessageSummary of(Message message) {
+            return new Summary(message.getMessageId(), message.getCreatedAt(), message.getPacketSize());
+        }
+
+        @Override
+        public Long getMessageId() {
+            return messageId;
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public Long getPacketSize() {
+            return packetSize;
+        }
+    }
+
+    private record Count(String recipientHash, long messageCount) implements MailboxCount {
+
+        @Override
+        public String getRecipientHash() {
+            return recipientHash;
+        }
+
+        @Override
+        public long getMessageCount() {
+            return messageCount;
+        }
+    }
+}
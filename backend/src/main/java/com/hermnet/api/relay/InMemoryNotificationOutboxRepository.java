@@ -0,0 +1,105 @@
+package com.hermnet.api.relay;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.NotificationOutbox;
+import com.hermnet.api.model.User;
+import com.hermnet.api.repository.ClaimedNotification;
+import com.hermnet.api.repository.NotificationOutboxRepository;
+import com.hermnet.api.repository.UserRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * In-memory {@link NotificationOutboxRepository} used by the relay profile.
+ *
+ * The outbox is not part of the relay snapshot: notifications still pending
+ * on shutdown are lost, and their recipients pick the packets up on their next
+ * sync.
+ */
+@Repository
+@Profile("relay")
+@RequiredArgsConstructor
+public class InMemoryNotificationOutboxRepository extends InMemoryRepository<NotificationOutbox, String>
+        implements NotificationOutboxRepository {
+
+    private final UserRepository userRepository;
+
+    @Override
+    protected String idOf(NotificationOutbox entry) {
+        return entry.getRecipientHash();
+    }
+
+    @Override
+    public synchronized void recordPending(String recipientHash, LocalDateTime now) {
+        if (userRepository.findById(recipientHash).map(User::getPushToken).isEmpty()) {
+            return;
+        }
+        NotificationOutbox entry = findById(recipientHash).orElse(null);
+        if (entry == null) {
+            save(NotificationOutbox.builder()
+                    .recipientHash(recipientHash)
+                    .nextAttemptAt(now)
+                    .createdAt(now)
+                    .build());
+            return;
+        }
+        entry.setGeneration(entry.getGeneration() + 1);
+    }
+
+    @Override
+    public synchronized List<ClaimedNotification> claimDue(LocalDateTime now, int limit, Duration backoff,
+            Duration maxBackoff) {
+        List<NotificationOutbox> due = values().stream()
+                .filter(entry -> !entry.getNextAttemptAt().isAfter(now))
+                .sorted(Comparator.comparing(NotificationOutbox::getNextAttemptAt))
+                .limit(limit)
+                .toList();
+
+        for (NotificationOutbox entry : due) {
+            long delay = backoff.toMillis() << Math.min(entry.getAttempts(), 32);
+            if (delay <= 0 || delay > maxBackoff.toMillis()) {
+                delay = maxBackoff.toMillis();
+            }
+            delay = (long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble() / 2));
+            entry.setAttempts(entry.getAttempts() + 1);
+            entry.setNextAttemptAt(now.plus(Duration.ofMillis(delay)));
+        }
+        return due.stream()
+                .map(entry -> new ClaimedNotification(entry.getRecipientHash(), entry.getGeneration(),
+                        entry.getAttempts()))
+                .toList();
+    }
+
+    @Override
+    public synchronized void acknowledge(Collection<ClaimedNotification> notifications) {
+        for (ClaimedNotification notification : notifications) {
+            NotificationOutbox entry = findById(notification.recipientHash()).orElse(null);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.getGeneration() == notification.generation()) {
+                remove(entry);
+            } else {
+                entry.setAttempts(0);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int deleteExhausted(int maxAttempts, LocalDateTime now) {
+        List<NotificationOutbox> exhausted = values().stream()
+                .filter(entry -> entry.getAttempts() >= maxAttempts && !entry.getNextAttemptAt().isAfter(now))
+                .toList();
+        exhausted.forEach(this::remove);
+        return exhausted.size();
+    }
+}
@@ -0,0 +1,21 @@
+package com.hermnet.api.relay;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.RateLimitBucket;
+import com.hermnet.api.repository.RateLimitBucketRepository;
+
+/**
+ * In-memory {@link RateLimitBucketRepository} used by the relay profile.
+ */
+@Repository
+@Profile("relay")
+public class InMemoryRateLimitBucketRepository extends InMemoryRepository<RateLimitBucket, String>
+        implements RateLimitBucketRepository {
+
+    @Override
+    protected String idOf(RateLimitBucket bucket) {
+        return bucket.getIpHash();
+    }
+}
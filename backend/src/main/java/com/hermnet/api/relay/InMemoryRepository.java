@@ -0,0 +1,311 @@
+package com.hermnet.api.relay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.orm.jpa.JpaObjectRetrievalFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Base class for the relay's in-memory repositories.
+ *
+ * Entities live in a {@link ConcurrentHashMap} keyed by their ID and are
+ * returned by reference, much like managed entities of a persistence context.
+ * An entity inserted inside a transaction is removed again if the transaction
+ * rolls back; updates and deletes are applied immediately and not undone.
+ * Only the CRUD operations are supported; query-by-example, sorting and paging
+ * are not used by the application and throw
+ * {@link UnsupportedOperationException}.
+ *
+ * @param <T>  The entity type.
+ * @param <ID> The type of the entity ID.
+ */
+public abstract class InMemoryRepository<T, ID> implements JpaRepository<T, ID> {
+
+    private final Map<ID, T> entities = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the ID of an entity, or null if it has not been assigned yet.
+     *
+     * @param entity The entity.
+     * @return The entity ID.
+     */
+    protected abstract ID idOf(T entity);
+
+    /**
+     * Called before an entity is inserted, to assign generated IDs and
+     * timestamps the way the database and JPA callbacks would.
+     *
+     * @param entity The entity about to be inserted.
+     */
+    protected void beforeInsert(T entity) {
+    }
+
+    /**
+     * Called after an entity has been added or replaced.
+     *
+     * @param entity   The stored entity.
+     * @param previous The entity previously stored under the same ID, or null.
+     */
+    protected void afterStore(T entity, T previous) {
+    }
+
+    /**
+     * Called after an entity has been removed.
+     *
+     * @param entity The removed entity.
+     */
+    protected void afterRemove(T entity) {
+    }
+
+    /**
+     * Adds an entity read from a snapshot, keeping its ID and timestamps.
+     *
+     * @param entity The entity to restore.
+     */
+    public void restore(T entity) {
+        afterStore(entity, entities.put(idOf(entity), entity));
+    }
+
+    /**
+     * Returns a view of all stored entities.
+     *
+     * @return The stored entities.
+     */
+    protected Collection<T> values() {
+        return entities.values();
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        ID id = idOf(entity);
+        if (id == null || !entities.containsKey(id)) {
+            beforeInsert(entity);
+            id = idOf(entity);
+            removeOnRollback(entity);
+        }
+        afterStore(entity, entities.put(id, entity));
+        return entity;
+    }
+
+    /**
+     * Removes an entity inserted in the current transaction if that transaction
+     * does not commit, the way the database would discard the row.
+     */
+    private void removeOnRollback(T entity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    remove(entity);
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public void flush() {
+        // Nothing is buffered
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        return Optional.ofNullable(entities.get(id));
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return entities.containsKey(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return new ArrayList<>(entities.values());
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        List<T> found = new ArrayList<>();
+        for (ID id : ids) {
+            T entity = entities.get(id);
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return entities.size();
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        T removed = entities.remove(id);
+        if (removed != null) {
+            afterRemove(removed);
+        }
+    }
+
+    /**
+     * Removes an entity if it is still stored.
+     *
+     * @param entity The entity to remove.
+     * @return Whether this call removed the entity.
+     */
+    protected boolean remove(T entity) {
+        ID id = idOf(entity);
+        if (id != null && entities.remove(id, entity)) {
+            afterRemove(entity);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void delete(T entity) {
+        remove(entity);
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        for (ID id : ids) {
+            deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        for (T entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAll(findAll());
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<ID> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    @Deprecated
+    public T getOne(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public T getById(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getReferenceById(ID id) {
+        T entity = entities.get(id);
+        if (entity == null) {
+            throw new JpaObjectRetrievalFailureException(new EntityNotFoundException("No entity with id " + id));
+        }
+        return entity;
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        throw unsupported();
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        throw unsupported();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example,
+            Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Not supported by the in-memory relay repositories");
+    }
+}
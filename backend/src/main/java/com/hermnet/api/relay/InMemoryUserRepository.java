@@ -0,0 +1,48 @@
+package com.hermnet.api.relay;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import com.hermnet.api.model.User;
+import com.hermnet.api.repository.UserRepository;
+
+/**
+ * In-memory {@link UserRepository} used by the relay profile.
+ */
+@Repository
+@Profile("relay")
+public class InMemoryUserRepository extends InMemoryRepository<User, String> implements UserRepository {
+
+    @Override
+    protected String idOf(User user) {
+        return user.getIdHash();
+    }
+
+    @Override
+    protected void beforeInsert(User user) {
+        user.setCreatedAt(LocalDateTime.now());
+    }
+
+    @Override
+    public Optional<User> findByPublicKey(String publicKey) {
+        return values().stream()
+                .filter(user -> publicKey.equals(user.getPublicKey()))
+                .findFirst();
+    }
+
+    @Override
+    public int clearPushTokens(Collection<String> pushTokens) {
+        int cleared = 0;
+        for (User user : values()) {
+            if (user.getPushToken() != null && pushTokens.contains(user.getPushToken())) {
+                user.setPushToken(null);
+                cleared++;
+            }
+        }
+        return cleared;
+    }
+}
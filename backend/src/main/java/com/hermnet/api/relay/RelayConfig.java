@@ -0,0 +1,30 @@
+package com.hermnet.api.relay;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Configuration for the {@code relay} profile.
+ *
+ * Edge relays run without PostgreSQL: the DataSource and JPA auto-configuration
+ * are excluded in {@code application-relay.properties}, repositories are
+ * replaced by the in-memory implementations of this package and their content
+ * is periodically saved by {@link RelaySnapshotService}.
+ */
+@Configuration
+@Profile("relay")
+public class RelayConfig {
+
+    /**
+     * Provides the transaction manager used by {@code @Transactional} services
+     * in place of the JPA one.
+     *
+     * @return The relay transaction manager.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return new RelayTransactionManager();
+    }
+}
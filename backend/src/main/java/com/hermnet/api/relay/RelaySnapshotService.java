@@ -0,0 +1,305 @@
+package com.hermnet.api.relay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.model.AuthChallenge;
+import com.hermnet.api.model.BlacklistedToken;
+import com.hermnet.api.model.Message;
+import com.hermnet.api.model.RateLimitBucket;
+import com.hermnet.api.model.User;
+import com.hermnet.api.storage.OffHeapPacketStore;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves the relay's in-memory state to a local snapshot file and reloads it at
+ * startup, so a restarted relay keeps its users and undelivered mailboxes.
+ *
+ * A snapshot is written to a temporary file, forced to disk and atomically
+ * renamed over the previous one, so a crash at any point leaves either the old
+ * or the new snapshot in place, never a partial one. Each message is written
+ * together with its packet bytes; messages deleted while the snapshot is taken
+ * are skipped. Mailbox summaries are not saved but rebuilt from the messages.
+ *
+ * The atomic rename only guarantees a complete file, not a point-in-time view
+ * of its contents. Writes continue while a snapshot is taken and each
+ * repository is iterated independently, so a snapshot can hold a message whose
+ * recipient registered after the users were written, miss a message stored
+ * behind the iterator, or keep one acknowledged after it was written. Restoring
+ * such a snapshot never corrupts the relay, but may redeliver or lose the
+ * changes made during the last snapshot.
+ *
+ * File layout (big-endian):
+ *
+ * <pre>
+ * [4 bytes MAGIC][4 bytes VERSION]
+ * users, challenges, rate limit buckets, blacklisted tokens, messages:
+ *     ([1 byte 1][record])* [1 byte 0]
+ * [4 bytes MAGIC]
+ * </pre>
+ */
+@Component
+@Profile("relay")
+@RequiredArgsConstructor
+@Slf4j
+public class RelaySnapshotService {
+
+    private static final int MAGIC = 0x484E534E; // "HNSN"
+    private static final int VERSION = 1;
+
+    private final InMemoryUserRepository userRepository;
+    private final InMemoryAuthChallengeRepository authChallengeRepository;
+    private final InMemoryRateLimitBucketRepository rateLimitBucketRepository;
+    private final InMemoryBlacklistedTokenRepository blacklistedTokenRepository;
+    private final InMemoryMessageRepository messageRepository;
+    private final InMemoryMailboxSummaryRepository summaryRepository;
+    private final OffHeapPacketStore packetStore;
+
+    @Value("${hermnet.relay.snapshot.file:relay.snapshot}")
+    private String file;
+
+    private Path path;
+
+    /**
+     * Reloads the last snapshot, if there is one.
+     *
+     * @throws IOException If the snapshot exists but cannot be read.
+     */
+    @PostConstruct
+    public void restore() throws IOException {
+        path = Paths.get(file).toAbsolutePath().normalize();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognized relay snapshot " + path);
+            }
+            while (in.readBoolean()) {
+                userRepository.restore(readUser(in));
+            }
+            while (in.readBoolean()) {
+                AuthChallenge challenge = readChallenge(in);
+                if (challenge != null) {
+                    authChallengeRepository.restore(challenge);
+                }
+            }
+            while (in.readBoolean()) {
+                rateLimitBucketRepository.restore(readBucket(in));
+            }
+            while (in.readBoolean()) {
+                blacklistedTokenRepository.restore(readToken(in));
+            }
+            int messages = 0;
+            while (in.readBoolean()) {
+                Message message = readMessage(in);
+                messageRepository.restore(message);
+                summaryRepository.recordStored(message.getRecipientHash(), message.getPacketSize(),
+                        message.getCreatedAt());
+                messages++;
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Truncated relay snapshot " + path);
+            }
+            log.info("Restored relay snapshot with {} users and {} messages", userRepository.count(), messages);
+        }
+    }
+
+    /**
+     * Writes a new snapshot, replacing the previous one.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.relay.snapshot.interval:PT30S}",
+            initialDelayString = "${hermnet.relay.snapshot.interval:PT30S}")
+    public synchronized void snapshot() {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)));
+                write(out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to write relay snapshot {}", path, e);
+        }
+    }
+
+    /**
+     * Takes a final snapshot on shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        for (User user : userRepository.findAll()) {
+            out.writeBoolean(true);
+            writeString(out, user.getIdHash());
+            writeString(out, user.getPublicKey());
+            writeString(out, user.getPushToken());
+            writeTime(out, user.getCreatedAt());
+        }
+        out.writeBoolean(false);
+
+        for (AuthChallenge challenge : authChallengeRepository.findAll()) {
+            out.writeBoolean(true);
+            out.writeLong(challenge.getChallengeId());
+            writeString(out, challenge.getNonce());
+            writeString(out, challenge.getUserHash().getIdHash());
+            writeTime(out, challenge.getExpiresAt());
+        }
+        out.writeBoolean(false);
+
+        for (RateLimitBucket bucket : rateLimitBucketRepository.findAll()) {
+            out.writeBoolean(true);
+            writeString(out, bucket.getIpHash());
+            out.writeInt(bucket.getRequestCount());
+            writeTime(out, bucket.getResetTime());
+        }
+        out.writeBoolean(false);
+
+        for (BlacklistedToken token : blacklistedTokenRepository.findAll()) {
+            out.writeBoolean(true);
+            writeString(out, token.getJti());
+            writeString(out, token.getRevokedReason());
+            writeTime(out, token.getExpiresAt());
+        }
+        out.writeBoolean(false);
+
+        for (Message message : messageRepository.findAll()) {
+            InputStream packet;
+            try {
+                packet = packetStore.open(message);
+            } catch (IOException e) {
+                // Deleted since the message list was taken
+                continue;
+            }
+            try (packet) {
+                out.writeBoolean(true);
+                out.writeLong(message.getMessageId());
+                writeString(out, message.getRecipientHash());
+                writeTime(out, message.getCreatedAt());
+                out.writeInt((int) packetStore.size(message));
+                packet.transferTo(out);
+            }
+        }
+        out.writeBoolean(false);
+
+        out.writeInt(MAGIC);
+    }
+
+    private User readUser(DataInputStream in) throws IOException {
+        return User.builder()
+                .idHash(readString(in))
+                .publicKey(readString(in))
+                .pushToken(readString(in))
+                .createdAt(readTime(in))
+                .build();
+    }
+
+    private AuthChallenge readChallenge(DataInputStream in) throws IOException {
+        long challengeId = in.readLong();
+        String nonce = readString(in);
+        String userHash = readString(in);
+        LocalDateTime expiresAt = readTime(in);
+
+        // The user may have been added after the users were written
+        return userRepository.findById(userHash)
+                .map(user -> AuthChallenge.builder()
+                        .challengeId(challengeId)
+                        .nonce(nonce)
+                        .userHash(user)
+                        .expiresAt(expiresAt)
+                        .build())
+                .orElse(null);
+    }
+
+    private RateLimitBucket readBucket(DataInputStream in) throws IOException {
+        return RateLimitBucket.builder()
+                .ipHash(readString(in))
+                .requestCount(in.readInt())
+                .resetTime(readTime(in))
+                .build();
+    }
+
+    private BlacklistedToken readToken(DataInputStream in) throws IOException {
+        return BlacklistedToken.builder()
+                .jti(readString(in))
+                .revokedReason(readString(in))
+                .expiresAt(readTime(in))
+                .build();
+    }
+
+    private Message readMessage(DataInputStream in) throws IOException {
+        long messageId = in.readLong();
+        String recipientHash = readString(in);
+        LocalDateTime createdAt = readTime(in);
+        byte[] packet = in.readNBytes(in.readInt());
+
+        return Message.builder()
+                .messageId(messageId)
+                .recipientHash(recipientHash)
+                .packetRef(packetStore.put(new ByteArrayInputStream(packet)))
+                .packetSize((long) packet.length)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        writeString(out, time != null ? time.toString() : null);
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        String time = readString(in);
+        return time != null ? LocalDateTime.parse(time) : null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.hermnet.api.repository;
+
+/**
+ * A packet released by acknowledging its message.
+ *
+ * @param packetRef The reference of the packet for the packet store to
+ *                  release, or null if the packet was stored inline or is still
+ *                  referenced by other mailbox entries.
+ * @param size      The packet size in bytes, 0 for rows written before sizes
+ *                  were recorded.
+ */
+public record AcknowledgedPacket(String packetRef, long size) {
+}
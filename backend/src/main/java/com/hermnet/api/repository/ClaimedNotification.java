@@ -0,0 +1,11 @@
+package com.hermnet.api.repository;
+
+/**
+ * An outbox notification claimed for sending.
+ *
+ * @param recipientHash The hashed ID of the recipient to notify.
+ * @param generation    The generation of the outbox entry when it was claimed.
+ * @param attempts      The number of attempts, including this one.
+ */
+public record ClaimedNotification(String recipientHash, long generation, int attempts) {
+}
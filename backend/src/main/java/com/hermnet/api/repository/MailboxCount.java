@@ -0,0 +1,17 @@
+package com.hermnet.api.repository;
+
+/**
+ * Projection of the number of messages waiting in one mailbox.
+ */
+public interface MailboxCount {
+
+    /**
+     * @return The hashed ID of the recipient
+     */
+    String getRecipientHash();
+
+    /**
+     * @return The number of messages in the recipient's mailbox
+     */
+    long getMessageCount();
+}
@@ -0,0 +1,36 @@
+package com.hermnet.api.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository fragment updating mailbox summaries in place.
+ *
+ * Each update is a single statement on the recipient's summary row, so
+ * concurrent changes to the same mailbox are serialized by the row lock instead
+ * of overwriting each other.
+ */
+public interface MailboxSummaryCounterRepository {
+
+    /**
+     * Accounts for a packet stored in a recipient's mailbox, creating the
+     * summary if needed. Must be called inside the transaction that stores the
+     * packet.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param size          The packet size in bytes
+     * @param createdAt     When the message was stored
+     */
+    void recordStored(String recipientHash, long size, LocalDateTime createdAt);
+
+    /**
+     * Accounts for messages deleted from a recipient's mailbox. The oldest
+     * arrival time is read back from the first remaining message, a single
+     * index lookup. Must be called inside the transaction that deletes the
+     * messages, after the deletion.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param count         The number of deleted messages
+     * @param bytes         The total size of their packets in bytes
+     */
+    void recordRemoved(String recipientHash, long count, long bytes);
+}
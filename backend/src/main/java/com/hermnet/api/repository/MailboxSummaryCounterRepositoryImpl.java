@@ -0,0 +1,38 @@
+package com.hermnet.api.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JDBC implementation of {@link MailboxSummaryCounterRepository}, using a
+ * PostgreSQL upsert for stored packets.
+ */
+@RequiredArgsConstructor
+public class MailboxSummaryCounterRepositoryImpl implements MailboxSummaryCounterRepository {
+
+    private static final String STORED_SQL = "INSERT INTO mailbox_summary (recipient_hash, message_count, total_bytes, oldest_created_at) VALUES (?, 1, ?, ?) "
+            + "ON CONFLICT (recipient_hash) DO UPDATE SET message_count = mailbox_summary.message_count + 1, "
+            + "total_bytes = mailbox_summary.total_bytes + EXCLUDED.total_bytes, "
+            + "oldest_created_at = LEAST(mailbox_summary.oldest_created_at, EXCLUDED.oldest_created_at)";
+
+    private static final String REMOVED_SQL = "UPDATE mailbox_summary SET message_count = GREATEST(message_count - ?, 0), "
+            + "total_bytes = GREATEST(total_bytes - ?, 0), "
+            + "oldest_created_at = (SELECT created_at FROM mailbox WHERE recipient_hash = mailbox_summary.recipient_hash ORDER BY message_id LIMIT 1) "
+            + "WHERE recipient_hash = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void recordStored(String recipientHash, long size, LocalDateTime createdAt) {
+        jdbcTemplate.update(STORED_SQL, recipientHash, size, Timestamp.valueOf(createdAt));
+    }
+
+    @Override
+    public void recordRemoved(String recipientHash, long count, long bytes) {
+        jdbcTemplate.update(REMOVED_SQL, count, bytes, recipientHash);
+    }
+}
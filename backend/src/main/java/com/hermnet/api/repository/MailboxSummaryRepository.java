@@ -0,0 +1,15 @@
+package com.hermnet.api.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.hermnet.api.model.MailboxSummary;
+
+/**
+ * Repository interface for MailboxSummary entity database operations.
+ * 
+ * Summaries are read by recipient hash and only ever changed through the
+ * incremental updates of {@link MailboxSummaryCounterRepository}.
+ */
+public interface MailboxSummaryRepository
+        extends JpaRepository<MailboxSummary, String>, MailboxSummaryCounterRepository {
+}
@@ -0,0 +1,112 @@
+package com.hermnet.api.repository;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.hermnet.api.model.Message;
+
+/**
+ * Repository fragment for moving stego packets without materializing them.
+ *
+ * Complements the derived queries of {@link MessageRepository} with writes that
+ * bind the packet as a stream, so the JDBC driver copies it into the database
+ * in small chunks instead of from a fully buffered byte array, and with bulk
+ * deletes that report which packets they released. A packet shared by several
+ * mailbox entries is only released with the last of them.
+ */
+public interface MessagePacketRepository {
+
+    /**
+     * Inserts a new mailbox entry whose packet is read from the given stream.
+     *
+     * The stream is consumed until EOF. Must be called inside a transaction.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param packet        The packet bytes
+     * @return The generated message ID
+     */
+    long insertStreaming(String recipientHash, InputStream packet);
+
+    /**
+     * Inserts several mailbox entries, whose packets are read from the given
+     * streams, as a single JDBC batch.
+     *
+     * Each stream is consumed until EOF. Must be called inside a transaction.
+     *
+     * @param recipientHashes The hashed IDs of the recipients
+     * @param packets         The packet of each recipient, in the same order
+     * @return The generated message IDs, in the same order
+     */
+    List<Long> insertStreaming(List<String> recipientHashes, List<InputStream> packets);
+
+    /**
+     * Delivers the packet of an existing message to further recipients by
+     * adding one mailbox entry per recipient that references the same packet,
+     * in a single statement. The packet itself is not copied.
+     *
+     * The entries share a reference count, so the packet is only released by
+     * the bulk deletes once every one of them has been acknowledged. Must be
+     * called inside the transaction that stored the original message.
+     *
+     * @param messageId       The ID of the message whose packet is shared
+     * @param recipientHashes The hashed IDs of the further recipients, without
+     *                        duplicates or the original recipient
+     * @return The IDs of the new messages, in the order of the recipients
+     */
+    List<Long> shareWith(long messageId, List<String> recipientHashes);
+
+    /**
+     * Releases a message read through a streaming query, so that its packet can
+     * be garbage collected before the stream is exhausted.
+     *
+     * @param message The message to release
+     */
+    void detach(Message message);
+
+    /**
+     * Leases up to {@code limit} of a recipient's visible messages, oldest first,
+     * in a single statement. A message is visible if it has never been leased or
+     * its lease has expired.
+     *
+     * Rows being leased by a concurrent transaction are skipped rather than
+     * waited for, so parallel syncs receive disjoint messages. Must be called
+     * inside a transaction.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param limit         The maximum number of messages to lease
+     * @param now           The current time, against which leases expire
+     * @param until         The end of the new leases
+     * @return The IDs of the leased messages, in ascending order
+     */
+    List<Long> lease(String recipientHash, int limit, LocalDateTime now, LocalDateTime until);
+
+    /**
+     * Deletes all of a recipient's messages up to and including the given ID in
+     * a single statement.
+     *
+     * Packets stored in the row itself are released with it. Must be called
+     * inside a transaction.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param upTo          The ID of the last message to delete
+     * @return The packets of the deleted messages, with a reference only for
+     *         the packets the packet store should now release
+     */
+    List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, long upTo);
+
+    /**
+     * Deletes the given messages of a recipient in a single statement. IDs that
+     * do not exist or belong to another recipient are ignored.
+     *
+     * Packets stored in the row itself are released with it. Must be called
+     * inside a transaction.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param messageIds    The IDs of the messages to delete
+     * @return The packets of the deleted messages, with a reference only for
+     *         the packets the packet store should now release
+     */
+    List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, Collection<Long> messageIds);
+}
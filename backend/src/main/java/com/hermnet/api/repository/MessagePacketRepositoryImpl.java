@@ -0,0 +1,222 @@
+package com.hermnet.api.repository;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import com.hermnet.api.model.Message;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JDBC implementation of {@link MessagePacketRepository}.
+ *
+ * The {@code stego_packet} column is a PostgreSQL large object, so the packet
+ * is bound with {@link PreparedStatement#setBlob(int, InputStream)} and the
+ * driver streams it into the large object as it reads. Deleting a row does not
+ * remove its large object, so the bulk deletes unlink them in the same
+ * statement. Leases are claimed with {@code FOR UPDATE SKIP LOCKED}.
+ *
+ * Shared packets are reference counted in {@code shared_packet}. The bulk
+ * deletes decrement the counts in the same statement; the row lock on the
+ * counter serializes concurrent acknowledgements of the same packet, so
+ * exactly one of them sees the count reach zero and releases the packet.
+ */
+@RequiredArgsConstructor
+public class MessagePacketRepositoryImpl implements MessagePacketRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO mailbox (recipient_hash, stego_packet, packet_size, created_at) VALUES (?, ?, ?, ?)";
+
+    private static final String DELETE_UP_TO_SQL = "WITH deleted AS (DELETE FROM mailbox WHERE recipient_hash = ? AND message_id <= ? "
+            + "RETURNING packet_ref, packet_size, stego_packet, shared_packet_id), ";
+
+    private static final String DELETE_IDS_SQL = "WITH deleted AS (DELETE FROM mailbox WHERE recipient_hash = ? AND message_id = ANY(?) "
+            + "RETURNING packet_ref, packet_size, stego_packet, shared_packet_id), ";
+
+    /**
+     * Completes both deletes: decrements the reference counts of shared packets
+     * and releases the packets no other entry references any more.
+     */
+    private static final String RELEASE_SQL = "shared AS (UPDATE shared_packet s SET ref_count = s.ref_count - 1 FROM deleted d "
+            + "WHERE s.id = d.shared_packet_id RETURNING s.id, s.ref_count), "
+            + "released AS (SELECT d.*, s.id AS shared_id, s.ref_count IS NULL OR s.ref_count <= 0 AS last "
+            + "FROM deleted d LEFT JOIN shared s ON s.id = d.shared_packet_id) "
+            + "SELECT CASE WHEN last THEN packet_ref END AS packet_ref, packet_size, shared_id, last, "
+            + "CASE WHEN last THEN lo_unlink(stego_packet) END FROM released";
+
+    private static final String DELETE_SHARED_SQL = "DELETE FROM shared_packet WHERE id = ANY(?) AND ref_count <= 0";
+
+    private static final String INSERT_SHARED_SQL = "INSERT INTO shared_packet (ref_count) VALUES (?) RETURNING id";
+
+    private static final String MARK_SHARED_SQL = "UPDATE mailbox SET shared_packet_id = ? WHERE message_id = ?";
+
+    private static final String SHARE_SQL = "INSERT INTO mailbox (recipient_hash, stego_packet, packet_ref, packet_size, shared_packet_id, created_at) "
+            + "SELECT r.recipient_hash, m.stego_packet, m.packet_ref, m.packet_size, m.shared_packet_id, m.created_at "
+            + "FROM mailbox m, unnest(?) WITH ORDINALITY AS r(recipient_hash, ord) WHERE m.message_id = ? "
+            + "ORDER BY r.ord RETURNING message_id";
+
+    private static final String LEASE_SQL = "UPDATE mailbox SET leased_until = ? WHERE message_id IN ("
+            + "SELECT message_id FROM mailbox WHERE recipient_hash = ? AND (leased_until IS NULL OR leased_until <= ?) "
+            + "ORDER BY message_id LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING message_id";
+
+    private static final RowMapper<DeletedRow> DELETED_ROW = (rs, rowNum) -> new DeletedRow(
+            new AcknowledgedPacket(rs.getString("packet_ref"), rs.getLong("packet_size")),
+            rs.getObject("shared_id", Long.class), rs.getBoolean("last"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Override
+    public long insertStreaming(String recipientHash, InputStream packet) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        CountingInputStream counted = new CountingInputStream(packet);
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[] { "message_id" });
+            statement.setString(1, recipientHash);
+            // The driver copies the stream into the large object while binding,
+            // so the size is known once setBlob returns
+            statement.setBlob(2, counted);
+            statement.setLong(3, counted.count);
+            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            return statement;
+        }, keyHolder);
+
+        return keyHolder.getKey().longValue();
+    }
+
+    @Override
+    public List<Long> insertStreaming(List<String> recipientHashes, List<InputStream> packets) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL,
+                    new String[] { "message_id" })) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                for (int i = 0; i < recipientHashes.size(); i++) {
+                    CountingInputStream counted = new CountingInputStream(packets.get(i));
+                    statement.setString(1, recipientHashes.get(i));
+                    statement.setBlob(2, counted);
+                    statement.setLong(3, counted.count);
+                    statement.setTimestamp(4, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                List<Long> ids = new ArrayList<>(recipientHashes.size());
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    @Override
+    public void detach(Message message) {
+        entityManager.detach(message);
+    }
+
+    @Override
+    public List<Long> lease(String recipientHash, int limit, LocalDateTime now, LocalDateTime until) {
+        List<Long> leased = jdbcTemplate.query(LEASE_SQL, (rs, rowNum) -> rs.getLong("message_id"),
+                Timestamp.valueOf(until), recipientHash, Timestamp.valueOf(now), limit);
+        // RETURNING does not preserve the order of the subquery
+        return leased.stream().sorted().toList();
+    }
+
+    @Override
+    public List<Long> shareWith(long messageId, List<String> recipientHashes) {
+        if (recipientHashes.isEmpty()) {
+            return List.of();
+        }
+        Long sharedId = jdbcTemplate.queryForObject(INSERT_SHARED_SQL, Long.class, recipientHashes.size() + 1);
+        jdbcTemplate.update(MARK_SHARED_SQL, sharedId, messageId);
+
+        List<Long> ids = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SHARE_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", recipientHashes.toArray()));
+            statement.setLong(2, messageId);
+            return statement;
+        }, (rs, rowNum) -> rs.getLong("message_id"));
+        // Rows are inserted in recipient order, so their IDs are ascending in it
+        return ids.stream().sorted().toList();
+    }
+
+    @Override
+    public List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, long upTo) {
+        return release(jdbcTemplate.query(DELETE_UP_TO_SQL + RELEASE_SQL, DELETED_ROW, recipientHash, upTo));
+    }
+
+    @Override
+    public List<AcknowledgedPacket> deleteAcknowledged(String recipientHash, Collection<Long> messageIds) {
+        return release(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_IDS_SQL + RELEASE_SQL);
+            statement.setString(1, recipientHash);
+            statement.setArray(2, connection.createArrayOf("bigint", messageIds.toArray()));
+            return statement;
+        }, DELETED_ROW));
+    }
+
+    /**
+     * Drops the reference counts that reached zero and returns the packets.
+     */
+    private List<AcknowledgedPacket> release(List<DeletedRow> rows) {
+        Long[] unreferenced = rows.stream()
+                .filter(row -> row.sharedId() != null && row.last())
+                .map(DeletedRow::sharedId)
+                .toArray(Long[]::new);
+        if (unreferenced.length > 0) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(DELETE_SHARED_SQL);
+                statement.setArray(1, connection.createArrayOf("bigint", unreferenced));
+                return statement;
+            });
+        }
+        return rows.stream().map(DeletedRow::packet).toList();
+    }
+
+    private record DeletedRow(AcknowledgedPacket packet, Long sharedId, boolean last) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
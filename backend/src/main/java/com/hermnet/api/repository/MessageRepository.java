@@ -1,9 +1,18 @@
 package com.hermnet.api.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.hermnet.api.model.Message;
 
@@ -12,7 +21,7 @@ import com.hermnet.api.model.Message;
  * 
  * Provides methods to store and retrieve secure, end-to-end encrypted messages.
  */
-public interface MessageRepository extends JpaRepository<Message, Long> {
+public interface MessageRepository extends JpaRepository<Message, Long>, MessagePacketRepository {
 
     /**
      * Retrieves all messages for a specific recipient hash, ordered by creation
@@ -27,6 +36,83 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      */
     List<Message> findByRecipientHashOrderByCreatedAtDesc(String recipientHash);
 
+    /**
+     * Streams one page of a recipient's messages using keyset pagination: the
+     * messages with an ID greater than the given cursor, oldest first.
+     * 
+     * Served by the {@code (recipient_hash, message_id)} index, so the cost of
+     * a page does not depend on how many messages precede the cursor. Must be
+     * called inside a transaction and the returned stream must be closed by the
+     * caller.
+     * 
+     * @param recipientHash The hashed ID of the user to stream messages for
+     * @param after         The cursor: the ID of the last message already received,
+     *                      or 0 to start from the oldest message
+     * @param limit         The maximum number of messages to return
+     * @return A lazily populated stream of at most {@code limit} messages
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1"))
+    Stream<Message> streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(String recipientHash, long after,
+            Limit limit);
+
+    /**
+     * Streams the given messages, oldest first, with the same one-row fetch size
+     * as the mailbox streams. Must be called inside a transaction and the
+     * returned stream must be closed by the caller.
+     * 
+     * @param messageIds The IDs of the messages to stream
+     * @return A lazily populated stream of the messages that exist
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1"))
+    Stream<Message> streamByMessageIdInOrderByMessageIdAsc(Collection<Long> messageIds);
+
+    /**
+     * Lists one page of a recipient's messages without their packets, using the
+     * same keyset pagination as
+     * {@link #streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(String, long, Limit)}.
+     * 
+     * Only the projected columns are selected, so the packets are never read.
+     * 
+     * @param recipientHash The hashed ID of the user to list messages for
+     * @param after         The cursor: the ID of the last message already listed,
+     *                      or 0 to start from the oldest message
+     * @param limit         The maximum number of messages to return
+     * @return At most {@code limit} message summaries, oldest first
+     */
+    List<MessageSummary> findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(String recipientHash,
+            long after, Limit limit);
+
+    /**
+     * Looks up a single message of a recipient without reading its packet.
+     * 
+     * @param messageId     The ID of the message
+     * @param recipientHash The hashed ID of the user the message must belong to
+     * @return The message summary, or empty if there is no such message in the
+     *         recipient's mailbox
+     */
+    Optional<MessageSummary> findByMessageIdAndRecipientHash(long messageId, String recipientHash);
+
+    /**
+     * Counts the messages in every non-empty mailbox with a single aggregate
+     * query, without reading any packet.
+     * 
+     * @return The message count of each recipient with at least one message
+     */
+    @Query("SELECT m.recipientHash AS recipientHash, COUNT(m) AS messageCount FROM Message m GROUP BY m.recipientHash")
+    List<MailboxCount> countByRecipient();
+
+    /**
+     * Lists the packet references held by any message, once each, without
+     * reading any packet.
+     * 
+     * Used by packet stores to reconcile their storage with the mailboxes
+     * after a restart.
+     * 
+     * @return The distinct non-null packet references
+     */
+    @Query("SELECT DISTINCT m.packetRef FROM Message m WHERE m.packetRef IS NOT NULL")
+    List<String> findDistinctPacketRefs();
+
     /**
      * Deletes all messages created before a specific timestamp.
      * 
@@ -0,0 +1,28 @@
+package com.hermnet.api.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a mailbox entry without its stego packet.
+ *
+ * Queries returning this type select only the listed columns, so listing a
+ * mailbox never reads packet bytes.
+ */
+public interface MessageSummary {
+
+    /**
+     * @return The ID of the message
+     */
+    Long getMessageId();
+
+    /**
+     * @return When the message was stored
+     */
+    LocalDateTime getCreatedAt();
+
+    /**
+     * @return The packet size in bytes, or null for rows written before sizes
+     *         were recorded
+     */
+    Long getPacketSize();
+}
@@ -0,0 +1,15 @@
+package com.hermnet.api.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.hermnet.api.model.NotificationOutbox;
+
+/**
+ * Repository interface for NotificationOutbox entity database operations.
+ * 
+ * Entries are only ever changed through the queue operations of
+ * {@link NotificationQueueRepository}.
+ */
+public interface NotificationOutboxRepository
+        extends JpaRepository<NotificationOutbox, String>, NotificationQueueRepository {
+}
@@ -0,0 +1,59 @@
+package com.hermnet.api.repository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository fragment using the notification outbox as a work queue.
+ *
+ * Claiming an entry reschedules it with an exponential backoff instead of
+ * locking it, so an entry whose notification is never confirmed, because FCM
+ * failed or the node crashed, becomes due again on its own.
+ */
+public interface NotificationQueueRepository {
+
+    /**
+     * Records that a recipient is owed a sync notification, unless they have
+     * no push token to send it to. Must be called inside the transaction that
+     * stores the packet.
+     *
+     * @param recipientHash The hashed ID of the recipient
+     * @param now           The current time
+     */
+    void recordPending(String recipientHash, LocalDateTime now);
+
+    /**
+     * Claims the entries that are due, oldest first, skipping entries claimed
+     * concurrently by another node. Each claimed entry counts an attempt and is
+     * rescheduled after {@code min(backoff * 2^attempts, maxBackoff)}, randomly
+     * shortened by up to half so retries of many entries do not line up.
+     *
+     * @param now        The current time
+     * @param limit      The maximum number of entries to claim
+     * @param backoff    The delay before the first retry
+     * @param maxBackoff The maximum delay between retries
+     * @return The claimed entries
+     */
+    List<ClaimedNotification> claimDue(LocalDateTime now, int limit, Duration backoff, Duration maxBackoff);
+
+    /**
+     * Removes entries whose notification has been accepted by FCM. An entry
+     * whose generation changed since it was claimed is kept, so the packets
+     * stored meanwhile get a notification of their own, but its attempts are
+     * reset.
+     *
+     * @param notifications The delivered notifications, as claimed
+     */
+    void acknowledge(Collection<ClaimedNotification> notifications);
+
+    /**
+     * Removes the due entries that have used up their attempts.
+     *
+     * @param maxAttempts The maximum number of attempts
+     * @param now         The current time
+     * @return The number of removed entries
+     */
+    int deleteExhausted(int maxAttempts, LocalDateTime now);
+}
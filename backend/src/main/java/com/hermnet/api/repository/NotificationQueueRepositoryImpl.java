@@ -0,0 +1,85 @@
+package com.hermnet.api.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JDBC implementation of {@link NotificationQueueRepository}, using a
+ * PostgreSQL upsert for new entries and {@code FOR UPDATE SKIP LOCKED} to
+ * claim due entries.
+ */
+@RequiredArgsConstructor
+public class NotificationQueueRepositoryImpl implements NotificationQueueRepository {
+
+    private static final String PENDING_SQL = "INSERT INTO notification_outbox (recipient_hash, generation, attempts, next_attempt_at, created_at) "
+            + "SELECT id_hash, 0, 0, ?, ? FROM users WHERE id_hash = ? AND push_token IS NOT NULL "
+            + "ON CONFLICT (recipient_hash) DO UPDATE SET generation = notification_outbox.generation + 1";
+
+    private static final String CLAIM_SQL = "UPDATE notification_outbox SET attempts = attempts + 1, "
+            + "next_attempt_at = ? + make_interval(secs => LEAST(? * power(2, attempts), ?) * (0.5 + random() / 2)) "
+            + "WHERE recipient_hash IN (SELECT recipient_hash FROM notification_outbox WHERE next_attempt_at <= ? "
+            + "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING recipient_hash, generation, attempts";
+
+    private static final String ACKNOWLEDGE_SQL = "DELETE FROM notification_outbox o "
+            + "USING unnest(?, ?) AS d(recipient_hash, generation) "
+            + "WHERE o.recipient_hash = d.recipient_hash AND o.generation = d.generation";
+
+    private static final String RESET_SQL = "UPDATE notification_outbox SET attempts = 0 WHERE recipient_hash = ANY(?)";
+
+    private static final String EXHAUSTED_SQL = "DELETE FROM notification_outbox WHERE attempts >= ? AND next_attempt_at <= ?";
+
+    private static final RowMapper<ClaimedNotification> CLAIMED = (rs, rowNum) -> new ClaimedNotification(
+            rs.getString("recipient_hash"), rs.getLong("generation"), rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void recordPending(String recipientHash, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.update(PENDING_SQL, timestamp, timestamp, recipientHash);
+    }
+
+    @Override
+    public List<ClaimedNotification> claimDue(LocalDateTime now, int limit, Duration backoff, Duration maxBackoff) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.query(CLAIM_SQL, CLAIMED, timestamp, backoff.toMillis() / 1000.0,
+                maxBackoff.toMillis() / 1000.0, timestamp, limit);
+    }
+
+    @Override
+    public void acknowledge(Collection<ClaimedNotification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Object[] recipientHashes = notifications.stream().map(ClaimedNotification::recipientHash).toArray();
+        Object[] generations = notifications.stream().map(ClaimedNotification::generation).toArray();
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ACKNOWLEDGE_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", recipientHashes));
+            statement.setArray(2, connection.createArrayOf("bigint", generations));
+            return statement;
+        });
+        // Entries still present were bumped by a new packet since they were claimed
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RESET_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", recipientHashes));
+            return statement;
+        });
+    }
+
+    @Override
+    public int deleteExhausted(int maxAttempts, LocalDateTime now) {
+        return jdbcTemplate.update(EXHAUSTED_SQL, maxAttempts, Timestamp.valueOf(now));
+    }
+}
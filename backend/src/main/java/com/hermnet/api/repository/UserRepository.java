@@ -1,8 +1,12 @@
 package com.hermnet.api.repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import com.hermnet.api.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -30,4 +34,18 @@ public interface UserRepository extends JpaRepository<User, String> {
      *         with that key
      */
     Optional<User> findByPublicKey(String publicKey);
+
+    /**
+     * Removes the given push tokens from the users they are registered to,
+     * in a single update statement.
+     * 
+     * Used to forget the tokens of uninstalled apps, which FCM reports as
+     * unregistered, so they cost no further FCM requests.
+     * 
+     * @param pushTokens The push tokens to remove
+     * @return The number of users whose token was removed
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.pushToken = NULL WHERE u.pushToken IN :pushTokens")
+    int clearPushTokens(@Param("pushTokens") Collection<String> pushTokens);
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package com.hermnet.api.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.hermnet.api.dto.NewMessageEvent;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of open live delivery connections, keyed by the authenticated
+ * user's ID hash.
+ *
+ * Foreground clients keep one Server-Sent Events connection open and receive
+ * a {@code message} event as soon as a packet for them is committed, without
+ * polling or a push notification round trip.
+ *
+ * Publishing never blocks on a client: each connection has a bounded outbound
+ * queue drained by its own task. A client that falls so far behind that its
+ * queue overflows is disconnected, and resumes from its sync cursor when it
+ * reconnects.
+ */
+@Component
+@Slf4j
+public class LiveDeliveryRegistry {
+
+    private final Map<String, Set<Connection>> connections = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${hermnet.mailbox.live.timeout:PT30M}")
+    private Duration timeout;
+
+    @Value("${hermnet.mailbox.live.queue-capacity:64}")
+    private int queueCapacity;
+
+    /**
+     * Opens a live delivery connection for a user.
+     *
+     * @param recipientHash The hashed ID of the authenticated user.
+     * @return The event stream to return from the request handler.
+     */
+    public SseEmitter connect(String recipientHash) {
+        Connection connection = new Connection(recipientHash, new SseEmitter(timeout.toMillis()));
+        connections.compute(recipientHash, (key, current) -> {
+            Set<Connection> set = current != null ? current : ConcurrentHashMap.newKeySet();
+            set.add(connection);
+            return set;
+        });
+
+        connection.emitter.onCompletion(connection::remove);
+        connection.emitter.onTimeout(connection::remove);
+        connection.emitter.onError(e -> connection.remove());
+        return connection.emitter;
+    }
+
+    /**
+     * Queues an event on every open connection of a recipient.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param event         The event to deliver.
+     */
+    public void publish(String recipientHash, NewMessageEvent event) {
+        Set<Connection> open = connections.get(recipientHash);
+        if (open == null) {
+            return;
+        }
+        for (Connection connection : open) {
+            connection.offer(event);
+        }
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return The number of connections across all users.
+     */
+    public int connectionCount() {
+        return connections.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.values().forEach(set -> set.forEach(connection -> connection.emitter.complete()));
+        executor.shutdownNow();
+    }
+
+    private final class Connection {
+
+        private final String recipientHash;
+        private final SseEmitter emitter;
+        private final BlockingQueue<NewMessageEvent> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Connection(String recipientHash, SseEmitter emitter) {
+            this.recipientHash = recipientHash;
+            this.emitter = emitter;
+        }
+
+        private void offer(NewMessageEvent event) {
+            if (!queue.offer(event)) {
+                log.debug("Live delivery queue full, disconnecting slow client");
+                remove();
+                emitter.complete();
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Sends queued events in order. Only one drain runs per connection, so a
+         * slow client only ever holds up its own queue.
+         */
+        private void drain() {
+            try {
+                NewMessageEvent event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(SseEmitter.event()
+                            .name("message")
+                            .id(Long.toString(event.messageId()))
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter was completed
+                remove();
+                queue.clear();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void remove() {
+            connections.computeIfPresent(recipientHash, (key, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
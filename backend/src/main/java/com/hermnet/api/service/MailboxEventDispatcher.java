@@ -0,0 +1,54 @@
+package com.hermnet.api.service;
+
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.dto.NewMessageEvent;
+import com.hermnet.api.events.MailboxEvent;
+import com.hermnet.api.events.MailboxEventBus;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Applies mailbox events from the event bus to the state of this node: bumps
+ * the {@link MailboxVersions}, updates the {@link PendingMailboxIndex} and,
+ * for new packets, wakes the long-polls parked
+ * in {@link MailboxWatchRegistry} and the live connections in
+ * {@link LiveDeliveryRegistry}.
+ *
+ * When the bus reconnects, events may have been missed, so every entity tag
+ * issued so far is invalidated and the pending index is rebuilt.
+ */
+@Component
+@RequiredArgsConstructor
+public class MailboxEventDispatcher {
+
+    private final MailboxEventBus eventBus;
+    private final MailboxWatchRegistry watchRegistry;
+    private final LiveDeliveryRegistry liveDelivery;
+    private final MailboxVersions versions;
+    private final PendingMailboxIndex pendingIndex;
+
+    @PostConstruct
+    public void subscribe() {
+        eventBus.subscribe(this::dispatch);
+        eventBus.onReconnect(this::reconnected);
+    }
+
+    void dispatch(MailboxEvent event) {
+        versions.bump(event.recipientHash());
+        switch (event.type()) {
+            case STORED -> {
+                pendingIndex.add(event.recipientHash(), event.count());
+                watchRegistry.signal(event.recipientHash());
+                liveDelivery.publish(event.recipientHash(), new NewMessageEvent(event.messageId(), event.size()));
+            }
+            case ACKNOWLEDGED -> pendingIndex.add(event.recipientHash(), -event.count());
+        }
+    }
+
+    void reconnected() {
+        versions.rotateEpoch();
+        pendingIndex.invalidate();
+    }
+}
@@ -0,0 +1,562 @@
+package com.hermnet.api.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.hermnet.api.dto.MailboxSummaryResponse;
+import com.hermnet.api.dto.MessageListResponse;
+import com.hermnet.api.dto.MessageMetadata;
+import com.hermnet.api.dto.SendMessageRequest;
+import com.hermnet.api.events.MailboxEvent;
+import com.hermnet.api.events.MailboxEventBus;
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.AcknowledgedPacket;
+import com.hermnet.api.repository.MailboxSummaryRepository;
+import com.hermnet.api.repository.MessageRepository;
+import com.hermnet.api.repository.MessageSummary;
+import com.hermnet.api.repository.NotificationOutboxRepository;
+import com.hermnet.api.storage.PacketStore;
+import com.hermnet.api.storage.PacketUpload;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Service responsible for storing packets in mailboxes and delivering them to
+ * recipients.
+ *
+ * Provides a streaming upload path, in which the packet is piped into the
+ * configured {@link PacketStore} while its size is checked, and a streaming
+ * sync mode, in which mailbox entries are read one by one from a database
+ * cursor and their packets transferred straight to the response as binary
+ * frames. Neither path holds a whole mailbox or a fully buffered upload on the
+ * heap.
+ *
+ * Syncs are paged with a keyset cursor on the message ID: each request returns
+ * up to a page of messages following the last ID the client has received.
+ *
+ * Sync frame layout (big-endian):
+ *
+ * <pre>
+ * [8 bytes message id][4 bytes packet length][packet bytes]
+ * </pre>
+ *
+ * The end of the mailbox is signalled by the end of the response body.
+ *
+ * Clients that want to choose what to download can list a mailbox page
+ * without packets and then fetch packets one at a time by message ID.
+ *
+ * Delivered messages stay in the mailbox until the recipient acknowledges
+ * them, after which they are deleted together with their packets.
+ *
+ * Alternatively, a mailbox can be consumed as a queue with at-least-once
+ * delivery: a leased sync hides the messages it returns from other leased
+ * syncs for a visibility timeout. Acknowledged messages are deleted as usual,
+ * while messages whose lease expires are delivered again.
+ *
+ * Each mailbox has a summary (message count, total size and oldest arrival)
+ * that is updated in the same transaction as every store and acknowledgement,
+ * so it can be read without touching the mailbox.
+ *
+ * Every store also records in the notification outbox that the recipient, if
+ * they have registered a push token, is owed a sync notification, which
+ * {@link NotificationOutboxRelay} sends once the transaction has committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class MailboxService {
+
+    private final MessageRepository messageRepository;
+    private final MailboxSummaryRepository summaryRepository;
+    private final NotificationOutboxRepository outboxRepository;
+    private final PacketStore packetStore;
+    private final MailboxEventBus eventBus;
+    private final MailboxVersions versions;
+    private final PlatformTransactionManager transactionManager;
+
+    private final SingleFlight<PageKey, MessageListResponse> listings = new SingleFlight<>();
+
+    @Value("${hermnet.mailbox.max-packet-bytes:2097152}")
+    private long maxPacketBytes;
+
+    @Value("${hermnet.mailbox.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${hermnet.mailbox.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${hermnet.mailbox.max-recipients:100}")
+    private int maxRecipients;
+
+    @Value("${hermnet.mailbox.lease.visibility-timeout:PT60S}")
+    private Duration visibilityTimeout;
+
+    /**
+     * Stores a packet read from a stream in the recipient's mailbox.
+     *
+     * The packet is never buffered as a whole: it is passed to the packet store
+     * as a stream while its length is checked against the configured maximum.
+     * A {@link MailboxEvent} is published, which wakes the recipient's waiting
+     * clients on every node once the transaction commits.
+     *
+     * @param recipientHash  The hashed ID of the recipient.
+     * @param packet         The raw packet bytes.
+     * @param declaredLength The length announced by the client, or -1 if unknown.
+     * @return The ID of the stored message.
+     * @throws PacketTooLargeException  if the packet exceeds the maximum size.
+     * @throws IllegalArgumentException if the packet is empty.
+     */
+    @Transactional
+    public long storePacket(String recipientHash, InputStream packet, long declaredLength) {
+        PacketLimitInputStream limited = new PacketLimitInputStream(packet, maxPacketBytes);
+        long messageId = store(recipientHash, limited, declaredLength);
+
+        delivered(recipientHash, messageId, limited.getCount());
+        return messageId;
+    }
+
+    /**
+     * Stores several packets, each in its own recipient's mailbox, in a single
+     * transaction.
+     *
+     * The sizes are checked before anything is stored and the mailbox entries
+     * are created through {@link PacketStore#storeAll(List)}, which lets the
+     * packet store insert them in one round trip.
+     *
+     * @param messages The recipients and their packets.
+     * @return The IDs of the stored messages, in the order given.
+     * @throws PacketTooLargeException  if a packet exceeds the maximum size.
+     * @throws IllegalArgumentException if a packet is empty.
+     */
+    @Transactional
+    public List<Long> storePackets(List<SendMessageRequest> messages) {
+        List<PacketUpload> uploads = new ArrayList<>(messages.size());
+        for (SendMessageRequest message : messages) {
+            byte[] packet = message.stegoImage();
+            if (packet.length > maxPacketBytes) {
+                throw new PacketTooLargeException(maxPacketBytes);
+            }
+            if (packet.length == 0) {
+                throw new IllegalArgumentException("Stego image cannot be empty");
+            }
+            uploads.add(new PacketUpload(message.recipientId(), new ByteArrayInputStream(packet)));
+        }
+
+        List<Long> messageIds = packetStore.storeAll(uploads);
+        for (int i = 0; i < messages.size(); i++) {
+            SendMessageRequest message = messages.get(i);
+            delivered(message.recipientId(), messageIds.get(i), message.stegoImage().length);
+        }
+        return messageIds;
+    }
+
+    /**
+     * Stores a packet read from a stream once and delivers it to the mailboxes
+     * of several recipients.
+     *
+     * The packet is streamed into the packet store for the first recipient,
+     * and every further recipient gets a mailbox entry referencing the same
+     * packet, so neither the upload nor the storage grows with the number of
+     * recipients. The packet is released once every recipient has
+     * acknowledged it.
+     *
+     * @param recipientHashes The hashed IDs of the recipients; duplicates are
+     *                        ignored.
+     * @param packet          The raw packet bytes.
+     * @param declaredLength  The length announced by the client, or -1 if
+     *                        unknown.
+     * @return The IDs of the stored messages, one per distinct recipient in the
+     *         order given.
+     * @throws PacketTooLargeException  if the packet exceeds the maximum size.
+     * @throws IllegalArgumentException if there are no or too many recipients,
+     *                                  or the packet is empty.
+     */
+    @Transactional
+    public List<Long> storeSharedPacket(List<String> recipientHashes, InputStream packet, long declaredLength) {
+        List<String> recipients = recipientHashes.stream().distinct().toList();
+        if (recipients.isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is required");
+        }
+        if (recipients.size() > maxRecipients) {
+            throw new IllegalArgumentException("At most " + maxRecipients + " recipients are allowed");
+        }
+
+        PacketLimitInputStream limited = new PacketLimitInputStream(packet, maxPacketBytes);
+        long first = store(recipients.get(0), limited, declaredLength);
+
+        List<Long> messageIds = new ArrayList<>(recipients.size());
+        messageIds.add(first);
+        messageIds.addAll(messageRepository.shareWith(first, recipients.subList(1, recipients.size())));
+
+        for (int i = 0; i < recipients.size(); i++) {
+            delivered(recipients.get(i), messageIds.get(i), limited.getCount());
+        }
+        return messageIds;
+    }
+
+    /**
+     * Writes one page of a recipient's mailbox as JSON, oldest first:
+     *
+     * <pre>
+     * {"messages": [{"messageId": 42, "stegoImage": "Base64..."}, ...], "next": 42}
+     * </pre>
+     *
+     * {@code next} is the cursor for the following page, or null once the
+     * mailbox has been read to the end. Each packet is Base64-encoded while it
+     * is read from the packet store, so no packet-sized array is allocated on
+     * the heap; prefer {@link #streamMailbox(String, long, Integer, OutputStream)},
+     * which also avoids the encoding overhead.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param after         The ID of the last message already received, or 0.
+     * @param limit         The maximum number of messages, or null for the
+     *                      default page size.
+     * @param json          The generator to write the page to.
+     * @throws IOException              If a packet cannot be read or the output
+     *                                  written.
+     * @throws IllegalArgumentException If the limit is not positive.
+     */
+    @Transactional(readOnly = true)
+    public void writePackets(String recipientHash, long after, Integer limit, JsonGenerator json)
+            throws IOException {
+        int pageSize = pageSize(limit);
+        int count = 0;
+        long last = after;
+
+        json.writeStartObject();
+        json.writeArrayFieldStart("messages");
+        try (Stream<Message> messages = page(recipientHash, after, pageSize)) {
+            Iterator<Message> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                Message message = iterator.next();
+                json.writeStartObject();
+                json.writeNumberField("messageId", message.getMessageId());
+                json.writeFieldName("stegoImage");
+                try (InputStream in = packetStore.open(message)) {
+                    json.writeBinary(in, (int) packetStore.size(message));
+                }
+                json.writeEndObject();
+
+                last = message.getMessageId();
+                count++;
+                messageRepository.detach(message);
+            }
+        }
+        json.writeEndArray();
+        // A short page means there is nothing left after it
+        if (count == pageSize) {
+            json.writeNumberField("next", last);
+        } else {
+            json.writeNullField("next");
+        }
+        json.writeEndObject();
+        json.flush();
+    }
+
+    /**
+     * Writes one page of a recipient's mailbox to the given output stream as
+     * length-prefixed binary frames, oldest first.
+     *
+     * The ID of the last frame is the cursor for the following page; fewer
+     * frames than the limit means the mailbox has been read to the end. Each
+     * message is detached from the persistence context as soon as it has been
+     * written, so at most one packet is kept in memory per request.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param after         The ID of the last message already received, or 0.
+     * @param limit         The maximum number of messages, or null for the
+     *                      default page size.
+     * @param out           The stream to write the frames to.
+     * @throws IOException              If writing to the output stream fails.
+     * @throws IllegalArgumentException If the limit is not positive.
+     */
+    @Transactional(readOnly = true)
+    public void streamMailbox(String recipientHash, long after, Integer limit, OutputStream out)
+            throws IOException {
+        int pageSize = pageSize(limit);
+        DataOutputStream frames = new DataOutputStream(out);
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        try (Stream<Message> messages = page(recipientHash, after, pageSize)) {
+            Iterator<Message> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                Message message = iterator.next();
+                writeFrame(frames, channel, message);
+                messageRepository.detach(message);
+            }
+        }
+
+        frames.flush();
+    }
+
+    /**
+     * Leases up to a page of a recipient's visible messages and writes them to
+     * the given output stream as binary frames, oldest first, in the layout of
+     * {@link #streamMailbox(String, long, Integer, OutputStream)}.
+     *
+     * Messages leased by another sync are skipped until their lease expires, so
+     * parallel and retried syncs do not download the same packets again. If
+     * writing fails, for example because the client disconnected, the leases
+     * are rolled back and the messages are immediately visible again.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param limit         The maximum number of messages, or null for the
+     *                      default page size.
+     * @param out           The stream to write the frames to.
+     * @throws IOException              If writing to the output stream fails.
+     * @throws IllegalArgumentException If the limit is not positive.
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public void leaseMailbox(String recipientHash, Integer limit, OutputStream out) throws IOException {
+        int pageSize = pageSize(limit);
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> leased = messageRepository.lease(recipientHash, pageSize, now, now.plus(visibilityTimeout));
+        if (leased.isEmpty()) {
+            return;
+        }
+
+        DataOutputStream frames = new DataOutputStream(out);
+        WritableByteChannel channel = Channels.newChannel(out);
+
+        try (Stream<Message> messages = messageRepository.streamByMessageIdInOrderByMessageIdAsc(leased)) {
+            Iterator<Message> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                Message message = iterator.next();
+                writeFrame(frames, channel, message);
+                messageRepository.detach(message);
+            }
+        }
+
+        frames.flush();
+    }
+
+    /**
+     * Lists one page of a recipient's mailbox without reading any packet.
+     *
+     * Identical concurrent listings, such as the burst of requests a client
+     * sends when woken by a push or the long-polls woken by the same packet,
+     * share a single query. Listings only share a query started at the same
+     * mailbox version, so a request never receives a page older than the
+     * changes it has been notified of.
+     *
+     * Only the request that runs the shared query opens a transaction, so the
+     * requests waiting for its result do not hold database connections.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param after         The ID of the last message already listed, or 0.
+     * @param limit         The maximum number of messages, or null for the
+     *                      default page size.
+     * @return The message metadata, oldest first, and the next cursor.
+     * @throws IllegalArgumentException If the limit is not positive.
+     */
+    public MessageListResponse listMessages(String recipientHash, long after, Integer limit) {
+        int pageSize = pageSize(limit);
+        PageKey key = new PageKey(recipientHash, versions.version(recipientHash), after, pageSize);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return listings.execute(key, () -> transaction.execute(status -> {
+            List<MessageMetadata> messages = messageRepository
+                    .findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(recipientHash, after,
+                            Limit.of(pageSize))
+                    .stream()
+                    .map(MailboxService::toMetadata)
+                    .toList();
+
+            // A short page means there is nothing left after it
+            Long next = messages.size() == pageSize ? messages.get(messages.size() - 1).messageId() : null;
+            return new MessageListResponse(messages, next);
+        }));
+    }
+
+    /**
+     * Looks up a single message in a recipient's mailbox without reading its
+     * packet.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param messageId     The ID of the message.
+     * @return The message metadata, or empty if the recipient has no such
+     *         message.
+     */
+    @Transactional(readOnly = true)
+    public Optional<MessageMetadata> findMessage(String recipientHash, long messageId) {
+        return messageRepository.findByMessageIdAndRecipientHash(messageId, recipientHash)
+                .map(MailboxService::toMetadata);
+    }
+
+    /**
+     * Writes the packet of a single message to the given output stream.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param messageId     The ID of the message.
+     * @param out           The stream to write the packet to.
+     * @throws IOException            If writing to the output stream fails.
+     * @throws NoSuchElementException If the recipient has no such message.
+     */
+    @Transactional(readOnly = true)
+    public void writePacket(String recipientHash, long messageId, OutputStream out) throws IOException {
+        Message message = messageRepository.findById(messageId)
+                .filter(found -> found.getRecipientHash().equals(recipientHash))
+                .orElseThrow(() -> new NoSuchElementException("Message not found: " + messageId));
+
+        packetStore.transferTo(message, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Deletes acknowledged messages from a recipient's mailbox with a single
+     * bulk delete, either by ID or up to a high-water mark.
+     *
+     * Packets held outside the mailbox table are released once the deletion
+     * has committed, so a rollback never leaves rows pointing at freed storage.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param messageIds    The IDs of the acknowledged messages, or null.
+     * @param upTo          The ID of the last acknowledged message, or null.
+     * @return The number of messages deleted.
+     * @throws IllegalArgumentException If not exactly one of {@code messageIds}
+     *                                  and {@code upTo} is given.
+     */
+    @Transactional
+    public int acknowledge(String recipientHash, List<Long> messageIds, Long upTo) {
+        boolean hasIds = messageIds != null && !messageIds.isEmpty();
+        if (hasIds == (upTo != null)) {
+            throw new IllegalArgumentException("Either messageIds or upTo is required, but not both");
+        }
+
+        List<AcknowledgedPacket> packets = hasIds
+                ? messageRepository.deleteAcknowledged(recipientHash, messageIds)
+                : messageRepository.deleteAcknowledged(recipientHash, upTo);
+
+        List<String> packetRefs = packets.stream().map(AcknowledgedPacket::packetRef).toList();
+        afterCommit(() -> packetStore.delete(packetRefs));
+        if (!packets.isEmpty()) {
+            long bytes = packets.stream().mapToLong(AcknowledgedPacket::size).sum();
+            summaryRepository.recordRemoved(recipientHash, packets.size(), bytes);
+            eventBus.publish(MailboxEvent.acknowledged(recipientHash, packets.size()));
+        }
+        return packets.size();
+    }
+
+    /**
+     * Summarizes a recipient's mailbox from its maintained counters, without
+     * reading the mailbox.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @return The number of waiting messages, their total size and the arrival
+     *         time of the oldest one.
+     */
+    @Transactional(readOnly = true)
+    public MailboxSummaryResponse summarize(String recipientHash) {
+        return summaryRepository.findById(recipientHash)
+                .map(summary -> new MailboxSummaryResponse(summary.getMessageCount(), summary.getTotalBytes(),
+                        summary.getOldestCreatedAt()))
+                .orElse(new MailboxSummaryResponse(0, 0, null));
+    }
+
+    private long store(String recipientHash, PacketLimitInputStream limited, long declaredLength) {
+        if (declaredLength > maxPacketBytes) {
+            throw new PacketTooLargeException(maxPacketBytes);
+        }
+
+        // Checked before anything is stored: not every packet store undoes its
+        // writes when the transaction rolls back
+        PushbackInputStream packet = new PushbackInputStream(limited);
+        try {
+            int first = packet.read();
+            if (first == -1) {
+                throw new IllegalArgumentException("Stego image cannot be empty");
+            }
+            packet.unread(first);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            return packetStore.store(recipientHash, packet);
+        } catch (RuntimeException e) {
+            // Stores wrap the stream failure, so rely on the stream's own state
+            if (limited.isExceeded()) {
+                throw new PacketTooLargeException(maxPacketBytes);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Accounts for a message stored in a mailbox and wakes its recipient, both
+     * on its waiting clients and through a push notification.
+     */
+    private void delivered(String recipientHash, long messageId, long size) {
+        LocalDateTime now = LocalDateTime.now();
+        summaryRepository.recordStored(recipientHash, size, now);
+        outboxRepository.recordPending(recipientHash, now);
+        eventBus.publish(MailboxEvent.stored(recipientHash, messageId, size));
+    }
+
+    private Stream<Message> page(String recipientHash, long after, int pageSize) {
+        return messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(recipientHash,
+                after, Limit.of(pageSize));
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private static MessageMetadata toMetadata(MessageSummary summary) {
+        return new MessageMetadata(summary.getMessageId(), summary.getCreatedAt(), summary.getPacketSize());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void writeFrame(DataOutputStream frames, WritableByteChannel channel, Message message)
+            throws IOException {
+        frames.writeLong(message.getMessageId());
+        frames.writeInt((int) packetStore.size(message));
+        packetStore.transferTo(message, channel);
+    }
+
+    private record PageKey(String recipientHash, long version, long after, int pageSize) {
+    }
+}
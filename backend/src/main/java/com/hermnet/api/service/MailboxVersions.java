@@ -0,0 +1,76 @@
+package com.hermnet.api.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory version counter per mailbox, used as the entity tag of sync
+ * responses.
+ *
+ * Every stored or acknowledged packet bumps the recipient's version, on every
+ * node, through the mailbox event bus. A client presenting the tag of the
+ * current version has already seen the current content, so the sync can be
+ * answered with 304 Not Modified without querying the database.
+ *
+ * Versions start over when the node restarts, so tags include a per-process
+ * epoch: a tag issued before the restart never matches a new one. The epoch is
+ * also rotated when the event bus reconnects, since the changes published
+ * while it was disconnected never bumped any version.
+ */
+@Component
+public class MailboxVersions {
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private volatile String epoch = newEpoch();
+
+    /**
+     * Records a change to a recipient's mailbox.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     */
+    public void bump(String recipientHash) {
+        versions.merge(recipientHash, 1L, Long::sum);
+    }
+
+    /**
+     * Returns the current version of a mailbox.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @return The number of changes seen by this node, 0 if none.
+     */
+    public long version(String recipientHash) {
+        return versions.getOrDefault(recipientHash, 0L);
+    }
+
+    /**
+     * Returns the entity tag of the current version of a mailbox.
+     *
+     * Read it before querying the mailbox, so the response is at least as new
+     * as the tag it is sent with.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @return The quoted entity tag.
+     */
+    public String etag(String recipientHash) {
+        return "\"" + epoch + "-" + version(recipientHash) + "\"";
+    }
+
+    /**
+     * Invalidates every entity tag issued so far, e.g. after events may have
+     * been missed.
+     */
+    public void rotateEpoch() {
+        String previous = epoch;
+        String next = newEpoch();
+        while (next.equals(previous)) {
+            next = newEpoch();
+        }
+        epoch = next;
+    }
+
+    private static String newEpoch() {
+        return Long.toHexString(System.nanoTime() ^ System.currentTimeMillis());
+    }
+}
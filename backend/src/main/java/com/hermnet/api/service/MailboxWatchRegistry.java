@@ -0,0 +1,102 @@
+package com.hermnet.api.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process registry of clients waiting for new packets in a mailbox.
+ *
+ * A long-polling request registers a one-shot listener for its recipient and
+ * releases its servlet thread. When a packet for that recipient is committed,
+ * every listener registered at that moment is removed and run, so a poll is
+ * completed by the arrival of mail instead of by querying the database
+ * repeatedly.
+ *
+ * Listeners run on virtual threads rather than on the thread that stored the
+ * packet, so a sender never waits for the recipients' responses.
+ */
+@Component
+public class MailboxWatchRegistry {
+
+    private final Map<String, Set<Watch>> watches = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Registers a listener to run once the next packet for a recipient is
+     * stored.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param listener      The action to run.
+     * @return A handle to cancel the watch, e.g. when the request times out.
+     */
+    public Watch watch(String recipientHash, Runnable listener) {
+        Watch watch = new Watch(recipientHash, listener);
+        watches.compute(recipientHash, (key, current) -> {
+            Set<Watch> set = current != null ? current : ConcurrentHashMap.newKeySet();
+            set.add(watch);
+            return set;
+        });
+        return watch;
+    }
+
+    /**
+     * Signals that a packet for a recipient has been stored, running and
+     * removing all listeners currently registered for them.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     */
+    public void signal(String recipientHash) {
+        Set<Watch> fired = watches.remove(recipientHash);
+        if (fired == null) {
+            return;
+        }
+        for (Watch watch : fired) {
+            executor.execute(watch.listener);
+        }
+    }
+
+    /**
+     * Returns the number of recipients with at least one waiting listener.
+     *
+     * @return The number of watched mailboxes.
+     */
+    public int watchedMailboxes() {
+        return watches.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A listener registered for one recipient.
+     */
+    public final class Watch {
+
+        private final String recipientHash;
+        private final Runnable listener;
+
+        private Watch(String recipientHash, Runnable listener) {
+            this.recipientHash = recipientHash;
+            this.listener = listener;
+        }
+
+        /**
+         * Removes the listener if it has not run yet.
+         */
+        public void cancel() {
+            watches.computeIfPresent(recipientHash, (key, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.hermnet.api.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends sync notifications off the request thread.
+ *
+ * Push tokens are put on a bounded in-process queue and drained by a fixed
+ * number of virtual-thread workers calling {@link NotificationService}, so a
+ * request storing a packet never waits for FCM, and an FCM slowdown only
+ * grows the queue instead of tying up servlet threads. When the queue is full,
+ * the configured {@link OverflowPolicy} decides which notification is lost.
+ *
+ * The queue itself is not persisted. Notifications for stored packets are
+ * fed from the durable {@link NotificationOutboxRelay}, which sends them
+ * again if they are lost on shutdown or dropped from a full queue.
+ *
+ * A worker that takes a notification keeps collecting for up to
+ * {@code batch-window}, or until it has {@code batch-size} of them, and sends
+ * them all in one FCM {@code sendEach} request. Under load this turns hundreds
+ * of HTTP round trips into one, at the cost of a few milliseconds of latency.
+ *
+ * Notifications are also debounced per device: a token already waiting to be
+ * sent is not queued again, and a token notified less than {@code debounce}
+ * ago is held back until the interval has passed. A burst of packets to one
+ * recipient therefore wakes the device at most once per interval, and the
+ * trailing notification still covers the packets that arrived meanwhile.
+ *
+ * The outcome of every batch is published as a {@link NotificationsSent}
+ * event, and so is every notification dropped from a full queue, as a failure
+ * without an error code.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatcher {
+
+    /**
+     * What to do with a notification that does not fit in the queue.
+     */
+    public enum OverflowPolicy {
+        /** Discard the new notification. */
+        DROP_NEWEST,
+        /** Discard the oldest queued notification to make room. */
+        DROP_OLDEST,
+        /** Send the notification on the calling thread, slowing the caller down. */
+        CALLER_RUNS
+    }
+
+    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${hermnet.notifications.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${hermnet.notifications.workers:4}")
+    private int workers;
+
+    @Value("${hermnet.notifications.overflow:drop-oldest}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${hermnet.notifications.batch-window:PT0.005S}")
+    private Duration batchWindow;
+
+    @Value("${hermnet.notifications.batch-size:500}")
+    private int batchSize;
+
+    @Value("${hermnet.notifications.debounce:PT2S}")
+    private Duration debounce;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /** Tokens queued or held back, and not yet sent. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /** When each recently notified token may be notified again, in {@link System#nanoTime()}. */
+    private final Map<String, Long> nextAllowed = new ConcurrentHashMap<>();
+
+    /** Tokens held back by the debounce interval. */
+    private final DelayQueue<Deferred> deferred = new DelayQueue<>();
+    private final AtomicLong reportedDropped = new AtomicLong();
+
+    private final List<Thread> threads = new ArrayList<>();
+    private BlockingQueue<String> queue;
+
+    /**
+     * Creates the queue and starts the workers.
+     */
+    @PostConstruct
+    public void start() {
+        batchSize = Math.max(1, Math.min(batchSize, NotificationService.MAX_BATCH_SIZE));
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofVirtual().name("notification-" + i).start(this::drain));
+        }
+        threads.add(Thread.ofVirtual().name("notification-debounce").start(this::release));
+    }
+
+    /**
+     * Stops the workers. Notifications still queued are discarded.
+     */
+    @PreDestroy
+    public void stop() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Queues a sync notification for a device without waiting for it to be
+     * sent. Does nothing if one is already pending for the device.
+     *
+     * @param recipientToken The FCM registration token of the recipient device;
+     *                       null and empty tokens are ignored.
+     */
+    public void enqueue(String recipientToken) {
+        if (recipientToken == null || recipientToken.isEmpty()) {
+            return;
+        }
+        if (!pending.add(recipientToken)) {
+            coalesced.incrementAndGet();
+            return;
+        }
+
+        Long allowed = nextAllowed.get(recipientToken);
+        if (allowed != null && allowed - System.nanoTime() > 0) {
+            deferred.add(new Deferred(recipientToken, allowed));
+            return;
+        }
+        offer(recipientToken);
+    }
+
+    private void offer(String recipientToken) {
+        if (queue.offer(recipientToken)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_NEWEST -> drop(recipientToken);
+            case DROP_OLDEST -> {
+                while (!queue.offer(recipientToken)) {
+                    String oldest = queue.poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                }
+                enqueued.incrementAndGet();
+            }
+            case CALLER_RUNS -> send(List.of(recipientToken));
+        }
+    }
+
+    /**
+     * Queues a sync notification for each of several devices.
+     *
+     * @param recipientTokens The FCM registration tokens of the recipient
+     *                        devices.
+     */
+    public void enqueueAll(Collection<String> recipientTokens) {
+        recipientTokens.forEach(this::enqueue);
+    }
+
+    /**
+     * @return The number of notifications waiting to be sent.
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * @return The number of notifications queued since startup.
+     */
+    public long enqueuedCount() {
+        return enqueued.get();
+    }
+
+    /**
+     * @return The number of notifications merged into one already pending for
+     *         the same device since startup.
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return The number of notifications lost to a full queue since startup.
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of notifications handed to FCM since startup,
+     *         successfully or not.
+     */
+    public long sentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return The number of notifications FCM did not accept since startup.
+     */
+    public long failedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Logs the queue depth and the notifications lost since the last report,
+     * if there is anything to report.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.notifications.report-interval:PT1M}")
+    public void report() {
+        long total = dropped.get();
+        long newlyDropped = total - reportedDropped.getAndSet(total);
+        int depth = depth();
+        if (newlyDropped > 0) {
+            log.warn("Notification queue overflowed: {} notifications dropped, {} queued", newlyDropped, depth);
+        } else if (depth > 0) {
+            log.info("Notification queue depth: {}", depth);
+        }
+    }
+
+    /**
+     * Forgets devices whose debounce interval has passed, so the map only
+     * holds recently notified devices.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.notifications.report-interval:PT1M}")
+    public void expireDebounce() {
+        long now = System.nanoTime();
+        nextAllowed.values().removeIf(allowed -> allowed - now <= 0);
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+                collect(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
+        }
+    }
+
+    /**
+     * Adds queued notifications to a batch until it is full or the batch
+     * window has passed.
+     */
+    private void collect(List<String> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + batchWindow.toNanos();
+        while (batch.size() < batchSize) {
+            // Take whatever is already queued without waiting
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            String recipientToken = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (recipientToken == null) {
+                return;
+            }
+            batch.add(recipientToken);
+        }
+    }
+
+    /**
+     * Moves held back notifications to the queue once their debounce interval
+     * has passed.
+     */
+    private void release() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                offer(deferred.take().recipientToken());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Discards a notification that did not fit in the queue and reports it as
+     * failed, so whoever is waiting for its outcome stops waiting.
+     */
+    private void drop(String recipientToken) {
+        pending.remove(recipientToken);
+        dropped.incrementAndGet();
+        eventPublisher.publishEvent(
+                new NotificationsSent(List.of(), List.of(new NotificationFailure(recipientToken, null))));
+    }
+
+    private void send(List<String> recipientTokens) {
+        long allowed = System.nanoTime() + debounce.toNanos();
+        for (String recipientToken : recipientTokens) {
+            // Removed before sending, so a packet arriving meanwhile gets its own notification
+            pending.remove(recipientToken);
+            nextAllowed.put(recipientToken, allowed);
+        }
+        List<NotificationFailure> failures;
+        try {
+            failures = notificationService.sendSyncNotifications(recipientTokens);
+        } catch (RuntimeException e) {
+            log.error("Unexpected failure sending {} sync notifications", recipientTokens.size(), e);
+            failures = recipientTokens.stream().map(token -> new NotificationFailure(token, null)).toList();
+        }
+        sent.addAndGet(recipientTokens.size());
+        failed.addAndGet(failures.size());
+
+        Set<String> rejected = failures.stream().map(NotificationFailure::recipientToken).collect(Collectors.toSet());
+        eventPublisher.publishEvent(new NotificationsSent(
+                recipientTokens.stream().filter(token -> !rejected.contains(token)).toList(), failures));
+    }
+
+    /**
+     * A notification held back until {@code due}, in {@link System#nanoTime()}.
+     */
+    private record Deferred(String recipientToken, long due) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
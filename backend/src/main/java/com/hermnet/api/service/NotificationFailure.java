@@ -0,0 +1,13 @@
+package com.hermnet.api.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+
+/**
+ * A sync notification that FCM did not accept.
+ *
+ * @param recipientToken The FCM registration token the notification was for.
+ * @param errorCode      The FCM error code, or null if the failure did not
+ *                       come with one (for example a network error).
+ */
+public record NotificationFailure(String recipientToken, MessagingErrorCode errorCode) {
+}
@@ -0,0 +1,121 @@
+package com.hermnet.api.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.hermnet.api.model.User;
+import com.hermnet.api.repository.ClaimedNotification;
+import com.hermnet.api.repository.NotificationOutboxRepository;
+import com.hermnet.api.repository.UserRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends the sync notifications recorded in the notification outbox.
+ *
+ * Storing a packet records that its recipient is owed a notification in the
+ * same transaction, so the notification cannot be lost between the commit and
+ * FCM. This relay periodically claims the due outbox entries in batches,
+ * resolves the recipients' push tokens with one query and hands them to the
+ * {@link NotificationDispatcher}. An entry is removed once FCM has accepted
+ * its notification; until then it is retried with an exponential backoff and
+ * jitter, so an FCM outage or a restart only delays notifications. Entries are
+ * given up after {@code max-attempts}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxRelay {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final UserRepository userRepository;
+    private final NotificationDispatcher notificationDispatcher;
+
+    @Value("${hermnet.notifications.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${hermnet.notifications.outbox.backoff:PT5S}")
+    private Duration backoff;
+
+    @Value("${hermnet.notifications.outbox.max-backoff:PT10M}")
+    private Duration maxBackoff;
+
+    @Value("${hermnet.notifications.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    /** Claimed entries waiting for their notification to be sent, by push token. */
+    private final Map<String, ClaimedNotification> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Claims the due outbox entries and queues their notifications.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.notifications.outbox.poll-interval:PT0.5S}")
+    @Transactional
+    public void relay() {
+        LocalDateTime now = LocalDateTime.now();
+        int exhausted = outboxRepository.deleteExhausted(maxAttempts, now);
+        if (exhausted > 0) {
+            log.warn("Gave up on {} sync notifications after {} attempts", exhausted, maxAttempts);
+        }
+
+        List<ClaimedNotification> claimed = outboxRepository.claimDue(now, batchSize, backoff, maxBackoff);
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> tokens = new HashMap<>();
+        List<String> recipientHashes = claimed.stream().map(ClaimedNotification::recipientHash).toList();
+        for (User user : userRepository.findAllById(recipientHashes)) {
+            if (user.getPushToken() != null && !user.getPushToken().isEmpty()) {
+                tokens.put(user.getIdHash(), user.getPushToken());
+            }
+        }
+
+        List<ClaimedNotification> unreachable = new ArrayList<>();
+        for (ClaimedNotification notification : claimed) {
+            String recipientToken = tokens.get(notification.recipientHash());
+            if (recipientToken == null) {
+                // The token was removed since the entry was recorded
+                unreachable.add(notification);
+                continue;
+            }
+            inFlight.put(recipientToken, notification);
+            notificationDispatcher.enqueue(recipientToken);
+        }
+        outboxRepository.acknowledge(unreachable);
+    }
+
+    /**
+     * Removes the outbox entries whose notification FCM has accepted. Entries
+     * of notifications that were rejected, or dropped by the dispatcher, stay
+     * scheduled for their next attempt and are no longer tracked as in flight.
+     *
+     * @param event The outcome of a batch of notifications.
+     */
+    @EventListener
+    @Transactional
+    public void onNotificationsSent(NotificationsSent event) {
+        event.failures().forEach(failure -> inFlight.remove(failure.recipientToken()));
+
+        List<ClaimedNotification> delivered = new ArrayList<>(event.delivered().size());
+        for (String recipientToken : event.delivered()) {
+            ClaimedNotification notification = inFlight.remove(recipientToken);
+            if (notification != null) {
+                delivered.add(notification);
+            }
+        }
+        outboxRepository.acknowledge(delivered);
+    }
+}
@@ -1,11 +1,21 @@
 package com.hermnet.api.service;
 
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.SendResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -15,35 +25,88 @@ public class NotificationService {
     private static final String ACTION_KEY = "action";
     private static final String ACTION_SYNC = "SYNC_REQUIRED";
 
+    /** Maximum number of messages FCM accepts in one sendEach call. */
+    static final int MAX_BATCH_SIZE = 500;
+
+    // How long FCM keeps an undelivered sync notification
+    @Value("${hermnet.notifications.ttl:PT5M}")
+    private Duration ttl;
+
     /**
-     * Sends a silent "Data-Only" push notification to the recipient.
-     * This wakes up the app in the background without showing a visual alert
-     * according to Zero-Knowledge principles.
+     * Sends a silent "Data-Only" push notification to several devices in as few
+     * FCM requests as possible, using {@code sendEach} with up to 500 messages
+     * per call. The notification wakes up the app in the background without
+     * showing a visual alert, according to Zero-Knowledge principles. Each
+     * device is notified once, however many times its token appears.
+     * 
+     * The result of each message is mapped back to its token, so callers can
+     * act on individual failures.
      * 
-     * @param recipientToken The FCM registration token of the recipient device.
+     * @param recipientTokens The FCM registration tokens of the recipient
+     *                        devices; null and empty tokens are skipped.
+     * @return The notifications that failed, with their error codes.
      */
-    public void sendSyncNotification(String recipientToken) {
-        if (recipientToken == null || recipientToken.isEmpty()) {
-            log.warn("Cannot send notification: Recipient token is null or empty.");
-            return;
+    public List<NotificationFailure> sendSyncNotifications(Collection<String> recipientTokens) {
+        List<String> tokens = recipientTokens.stream()
+                .filter(token -> token != null && !token.isEmpty())
+                .distinct()
+                .toList();
+
+        List<NotificationFailure> failures = new ArrayList<>();
+        for (int from = 0; from < tokens.size(); from += MAX_BATCH_SIZE) {
+            List<String> batch = tokens.subList(from, Math.min(from + MAX_BATCH_SIZE, tokens.size()));
+            try {
+                BatchResponse response = FirebaseMessaging.getInstance()
+                        .sendEach(batch.stream().map(this::syncMessage).toList());
+                // Responses are in the order of the messages
+                List<SendResponse> responses = response.getResponses();
+                for (int i = 0; i < responses.size(); i++) {
+                    if (!responses.get(i).isSuccessful()) {
+                        FirebaseMessagingException e = responses.get(i).getException();
+                        failures.add(new NotificationFailure(batch.get(i),
+                                e != null ? e.getMessagingErrorCode() : null));
+                    }
+                }
+                log.info("Sent {} of {} silent sync notifications", response.getSuccessCount(), batch.size());
+            } catch (FirebaseMessagingException e) {
+                // The whole request failed, so every message in it did
+                log.error("Failed to send {} FCM notifications", batch.size(), e);
+                batch.forEach(token -> failures.add(new NotificationFailure(token, e.getMessagingErrorCode())));
+            } catch (Exception e) {
+                log.error("Failed to send {} FCM notifications", batch.size(), e);
+                batch.forEach(token -> failures.add(new NotificationFailure(token, null)));
+            }
         }
 
-        try {
-            // Build a Message with only data payload (no .setNotification())
-            Message message = Message.builder()
-                    .setToken(recipientToken)
-                    .putData(ACTION_KEY, ACTION_SYNC)
-                    .build();
-
-            // Send via FCM
-            String response = FirebaseMessaging.getInstance().send(message);
-            log.info("Sent silent sync notification to token {}: {}",
-                    recipientToken.substring(0, Math.min(10, recipientToken.length())) + "...", response);
-        } catch (Exception e) {
-            log.error("Failed to send FCM notification to token {}", recipientToken, e);
-            // We don't throw exception to avoid rolling back the transaction or failing the
-            // request
-            // Message is stored regardless of notification failure.
+        for (NotificationFailure failure : failures) {
+            log.warn("FCM rejected sync notification to token {}: {}", abbreviate(failure.recipientToken()),
+                    failure.errorCode());
         }
+        return failures;
+    }
+
+    /**
+     * Shortens a token for logging, so logs never contain a usable token.
+     */
+    static String abbreviate(String recipientToken) {
+        return recipientToken.substring(0, Math.min(10, recipientToken.length())) + "...";
+    }
+
+    /**
+     * Builds a Message with only data payload (no .setNotification()).
+     * 
+     * All sync notifications share a collapse key, so FCM keeps only the latest
+     * one for an offline device instead of waking it once per packet, and
+     * drops it altogether after the TTL.
+     */
+    private Message syncMessage(String recipientToken) {
+        return Message.builder()
+                .setToken(recipientToken)
+                .putData(ACTION_KEY, ACTION_SYNC)
+                .setAndroidConfig(AndroidConfig.builder()
+                        .setCollapseKey(ACTION_SYNC)
+                        .setTtl(ttl.toMillis())
+                        .build())
+                .build();
     }
 }
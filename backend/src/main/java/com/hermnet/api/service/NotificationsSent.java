@@ -0,0 +1,15 @@
+package com.hermnet.api.service;
+
+import java.util.List;
+
+/**
+ * Published by {@link NotificationDispatcher} after a batch of sync
+ * notifications has been handed to FCM, or after a notification has been
+ * dropped from its full queue.
+ *
+ * @param delivered The tokens whose notification FCM accepted.
+ * @param failures  The notifications FCM did not accept, or that were dropped
+ *                  without being sent, which have no error code.
+ */
+public record NotificationsSent(List<String> delivered, List<NotificationFailure> failures) {
+}
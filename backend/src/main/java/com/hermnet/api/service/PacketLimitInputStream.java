@@ -0,0 +1,77 @@
+package com.hermnet.api.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that counts the bytes of an uploaded packet and enforces a
+ * maximum size while they are being read.
+ *
+ * Replaces the {@code @Size} check of the JSON upload path for streamed
+ * uploads: the limit is enforced as the bytes arrive, so an oversized packet
+ * is rejected without ever being buffered.
+ */
+class PacketLimitInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+    private long count;
+    private boolean exceeded;
+
+    PacketLimitInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            advance(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            advance(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        advance(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return The number of bytes read so far.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the stream was cut off because it exceeded the limit.
+     */
+    boolean isExceeded() {
+        return exceeded;
+    }
+
+    private void advance(long n) throws IOException {
+        count += n;
+        if (count > maxBytes) {
+            exceeded = true;
+            throw new IOException("Packet exceeds " + maxBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.hermnet.api.service;
+
+/**
+ * Thrown when an uploaded stego packet exceeds the configured maximum size.
+ */
+public class PacketTooLargeException extends RuntimeException {
+
+    public PacketTooLargeException(long maxBytes) {
+        super("Stego image exceeds the maximum size of " + maxBytes + " bytes");
+    }
+}
@@ -0,0 +1,130 @@
+package com.hermnet.api.service;
+
+/**
+ * Open-addressing hash map from recipient to pending message count, stored in
+ * two primitive arrays.
+ *
+ * Recipients are keyed by a 64-bit fingerprint of their ID hash instead of the
+ * string itself, so an entry costs 12 bytes and a lookup touches no objects.
+ * Two recipients sharing a fingerprint share a count; this can only make a
+ * mailbox look non-empty when it is empty, never the reverse.
+ *
+ * Not thread-safe. A read racing with a write may return a wrong count or
+ * fail, but always terminates, since the table is kept at most half full.
+ */
+final class PendingCountMap {
+
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    /**
+     * @param expected The number of recipients expected, to size the table.
+     */
+    PendingCountMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * @param recipientHash The hashed ID of the recipient.
+     * @return The pending count, 0 if the recipient is unknown.
+     */
+    int get(String recipientHash) {
+        long key = fingerprint(recipientHash);
+        long[] keys = this.keys;
+        int[] counts = this.counts;
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return counts[i];
+            }
+            if (keys[i] == FREE) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Adds to a recipient's count, which never drops below zero.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param delta         The number of messages added, negative when deleted.
+     */
+    void add(String recipientHash, int delta) {
+        long key = fingerprint(recipientHash);
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != key && keys[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == FREE) {
+            if (delta <= 0) {
+                return;
+            }
+            keys[i] = key;
+            size++;
+        }
+        counts[i] = Math.max(0, counts[i] + delta);
+
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * @return The number of recipients with an entry, including those whose
+     *         count has dropped back to zero.
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        size = 0;
+
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            // Recipients whose mailbox is empty are dropped
+            if (oldKeys[j] == FREE || oldCounts[j] == 0) {
+                continue;
+            }
+            int i = mix(oldKeys[j]) & mask;
+            while (keys[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            counts[i] = oldCounts[j];
+            size++;
+        }
+    }
+
+    /**
+     * FNV-1a over the characters of the ID hash, never {@link #FREE}.
+     */
+    static long fingerprint(String recipientHash) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < recipientHash.length(); i++) {
+            hash ^= recipientHash.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == FREE ? 1L : hash;
+    }
+
+    /**
+     * Spreads the fingerprint bits over the table index (MurmurHash3 finalizer).
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,170 @@
+package com.hermnet.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.repository.MailboxCount;
+import com.hermnet.api.repository.MessageRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of how many messages wait in each mailbox, so that syncs of
+ * empty mailboxes are answered without a database query.
+ *
+ * The index is built from one aggregate query over {@code mailbox} and kept
+ * current by the mailbox events of every node. It is rebuilt periodically to
+ * repair drift from events lost while the event bus reconnected. Packets
+ * stored while a rebuild query runs are replayed onto the rebuilt table, so
+ * a rebuild can overcount a new packet but never miss one. Deletions are not
+ * replayed: the query may already have seen them, and subtracting them twice
+ * could report a mailbox as empty while mail is waiting. A deletion missed
+ * this way only leaves an overcount until the next rebuild.
+ *
+ * Counts are upper bounds: a zero count is exact, a positive count means the
+ * mailbox has to be read. Until the first build completes every mailbox is
+ * reported as possibly non-empty. The same applies after the event bus
+ * reconnects: the index is invalidated and rebuilt in the background, since
+ * the changes published while the bus was down never reached it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingMailboxIndex {
+
+    private final MessageRepository messageRepository;
+
+    private final StampedLock lock = new StampedLock();
+    private PendingCountMap counts = new PendingCountMap(0);
+    private List<Delta> journal;
+    private long generation;
+    private volatile boolean ready;
+
+    /**
+     * Returns whether a mailbox may contain messages.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @return False only if the mailbox is known to be empty.
+     */
+    public boolean mayHaveMail(String recipientHash) {
+        return !ready || count(recipientHash) > 0;
+    }
+
+    /**
+     * Returns the number of messages waiting in a mailbox.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @return An upper bound of the message count, exact when 0; 0 while the
+     *         index is not ready, see {@link #mayHaveMail(String)}.
+     */
+    public int count(String recipientHash) {
+        if (!ready) {
+            return 0;
+        }
+        long stamp = lock.tryOptimisticRead();
+        int count;
+        try {
+            count = counts.get(recipientHash);
+        } catch (RuntimeException e) {
+            // Torn read of a table being resized, retried under the lock
+            count = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = counts.get(recipientHash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Records messages added to or deleted from a mailbox.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param delta         The number of messages added, negative when deleted.
+     */
+    public void add(String recipientHash, int delta) {
+        long stamp = lock.writeLock();
+        try {
+            counts.add(recipientHash, delta);
+            // Only additions are journaled, see the class comment
+            if (journal != null && delta > 0) {
+                journal.add(new Delta(recipientHash, delta));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stops answering from the index and rebuilds it in the background, after
+     * changes may have been missed.
+     */
+    public void invalidate() {
+        long stamp = lock.writeLock();
+        try {
+            ready = false;
+            generation++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        Thread.ofPlatform().daemon().name("pending-mailbox-index-rebuild").start(this::rebuild);
+    }
+
+    /**
+     * Rebuilds the index from the mailbox table.
+     *
+     * The index only becomes ready if it was not invalidated while the query
+     * ran, since the query may have missed changes made before the
+     * invalidation.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.mailbox.index.refresh-interval:PT5M}")
+    public synchronized void rebuild() {
+        long started;
+        long stamp = lock.writeLock();
+        try {
+            journal = new ArrayList<>();
+            started = generation;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        PendingCountMap rebuilt;
+        try {
+            List<MailboxCount> rows = messageRepository.countByRecipient();
+            rebuilt = new PendingCountMap(rows.size());
+            for (MailboxCount row : rows) {
+                rebuilt.add(row.getRecipientHash(), (int) Math.min(row.getMessageCount(), Integer.MAX_VALUE));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild the pending mailbox index", e);
+            stamp = lock.writeLock();
+            journal = null;
+            lock.unlockWrite(stamp);
+            return;
+        }
+
+        stamp = lock.writeLock();
+        try {
+            for (Delta delta : journal) {
+                rebuilt.add(delta.recipientHash(), delta.delta());
+            }
+            counts = rebuilt;
+            journal = null;
+            ready = generation == started;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private record Delta(String recipientHash, int delta) {
+    }
+}
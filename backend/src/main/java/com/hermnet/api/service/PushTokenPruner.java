@@ -0,0 +1,78 @@
+package com.hermnet.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.hermnet.api.repository.UserRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Removes push tokens that FCM reports as dead, so that messages to users
+ * whose app was uninstalled no longer cost an FCM request each.
+ *
+ * A token is dead when FCM answers {@code UNREGISTERED}, or
+ * {@code INVALID_ARGUMENT} for a token that is not a valid registration token.
+ * {@code INVALID_ARGUMENT} is also the answer to a malformed message, so it
+ * only counts at once when another notification of the same batch was
+ * accepted, proving the message itself was fine. A token that is alone in its
+ * batches, as most are under light load, is instead removed after a number of
+ * consecutive {@code INVALID_ARGUMENT} answers without an accepted
+ * notification in between.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PushTokenPruner {
+
+    private final UserRepository userRepository;
+
+    /** Consecutive unconfirmed {@code INVALID_ARGUMENT} answers per token. */
+    private final Map<String, Integer> invalidStreaks = new ConcurrentHashMap<>();
+
+    @Value("${hermnet.notifications.invalid-token-threshold:5}")
+    private int invalidTokenThreshold;
+
+    /**
+     * Clears the dead tokens of a batch of notifications with one update.
+     *
+     * @param event The outcome of a batch of notifications.
+     */
+    @EventListener
+    @Transactional
+    public void onNotificationsSent(NotificationsSent event) {
+        event.delivered().forEach(invalidStreaks::remove);
+
+        boolean messageAccepted = !event.delivered().isEmpty();
+        List<String> dead = new ArrayList<>();
+        for (NotificationFailure failure : event.failures()) {
+            if (failure.errorCode() == MessagingErrorCode.UNREGISTERED) {
+                invalidStreaks.remove(failure.recipientToken());
+                dead.add(failure.recipientToken());
+            } else if (failure.errorCode() == MessagingErrorCode.INVALID_ARGUMENT
+                    && (messageAccepted || isPersistentlyInvalid(failure.recipientToken()))) {
+                invalidStreaks.remove(failure.recipientToken());
+                dead.add(failure.recipientToken());
+            }
+        }
+        if (dead.isEmpty()) {
+            return;
+        }
+
+        int cleared = userRepository.clearPushTokens(dead);
+        log.info("Removed {} dead push tokens", cleared);
+    }
+
+    private boolean isPersistentlyInvalid(String token) {
+        return invalidStreaks.merge(token, 1, Integer::sum) >= invalidTokenThreshold;
+    }
+}
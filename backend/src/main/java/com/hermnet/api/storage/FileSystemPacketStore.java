@@ -0,0 +1,161 @@
+package com.hermnet.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Packet store keeping each packet in its own file on local disk.
+ *
+ * The mailbox row only holds a reference (the file path relative to the store
+ * directory) and the packet size. Uploads are streamed to a temporary file and
+ * atomically renamed once complete, and downloads are handed to
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which lets
+ * the operating system move the bytes without copying the packet into the JVM
+ * heap.
+ *
+ * Enabled with {@code hermnet.packet-store.type=filesystem}.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.packet-store.type", havingValue = "filesystem")
+@RequiredArgsConstructor
+@Slf4j
+public class FileSystemPacketStore implements PacketStore {
+
+    private final MessageRepository messageRepository;
+
+    @Value("${hermnet.packet-store.filesystem.directory:packets}")
+    private String directory;
+
+    private Path root;
+
+    /**
+     * Resolves and creates the store directory.
+     *
+     * @throws IOException If the directory cannot be created.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public long store(String recipientHash, InputStream packet) {
+        String ref = newRef();
+        Path file = resolve(ref);
+        long size;
+
+        try {
+            Files.createDirectories(file.getParent());
+            size = writeAtomically(packet, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        RollbackCleanup.onRollback(() -> deleteQuietly(file));
+
+        Message message = Message.builder()
+                .recipientHash(recipientHash)
+                .packetRef(ref)
+                .packetSize(size)
+                .build();
+
+        return messageRepository.save(message).getMessageId();
+    }
+
+    @Override
+    public long size(Message message) {
+        return message.getPacketSize();
+    }
+
+    @Override
+    public InputStream open(Message message) throws IOException {
+        return Files.newInputStream(resolve(message.getPacketRef()));
+    }
+
+    @Override
+    public void transferTo(Message message, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(message.getPacketRef()), StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> packetRefs) {
+        for (String ref : packetRefs) {
+            if (ref != null) {
+                deleteQuietly(resolve(ref));
+            }
+        }
+    }
+
+    private long writeAtomically(InputStream packet, Path file) throws IOException {
+        Path tmp = Files.createTempFile(file.getParent(), ".upload-", ".tmp");
+        try {
+            long size = 0;
+            // Not closed: closing the channel would close the caller's stream
+            ReadableByteChannel source = Channels.newChannel(packet);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = channel.transferFrom(source, size, Long.MAX_VALUE)) > 0) {
+                    size += transferred;
+                }
+                channel.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+    }
+
+    private String newRef() {
+        String id = UUID.randomUUID().toString();
+        // Fan out over subdirectories to keep directory listings small
+        return id.substring(0, 2) + "/" + id + ".pkt";
+    }
+
+    private Path resolve(String ref) {
+        Path file = root.resolve(ref).normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid packet reference: " + ref);
+        }
+        return file;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete packet file {}", file.getFileName(), e);
+        }
+    }
+}
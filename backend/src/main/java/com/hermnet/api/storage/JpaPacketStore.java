@@ -0,0 +1,65 @@
+package com.hermnet.api.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Default packet store, keeping each packet in the {@code stego_packet} column
+ * of its mailbox row. Batches of packets are inserted with a single JDBC batch.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.packet-store.type", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaPacketStore implements PacketStore {
+
+    private final MessageRepository messageRepository;
+
+    @Override
+    public long store(String recipientHash, InputStream packet) {
+        return messageRepository.insertStreaming(recipientHash, packet);
+    }
+
+    @Override
+    public List<Long> storeAll(List<PacketUpload> uploads) {
+        return messageRepository.insertStreaming(
+                uploads.stream().map(PacketUpload::recipientHash).toList(),
+                uploads.stream().map(PacketUpload::packet).toList());
+    }
+
+    @Override
+    public long size(Message message) {
+        // Rows written before packet_size existed only carry the bytes
+        return message.getPacketSize() != null ? message.getPacketSize() : message.getStegoPacket().length;
+    }
+
+    @Override
+    public InputStream open(Message message) {
+        return new ByteArrayInputStream(message.getStegoPacket());
+    }
+
+    @Override
+    public void transferTo(Message message, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(message.getStegoPacket());
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> packetRefs) {
+        // Packets are removed together with their mailbox rows
+    }
+}
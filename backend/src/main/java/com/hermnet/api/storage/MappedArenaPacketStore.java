@@ -0,0 +1,302 @@
+package com.hermnet.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Packet store backed by a preallocated, memory-mapped file split into
+ * equally sized slots.
+ *
+ * The protocol normalizes every stego image to the same size, so each packet
+ * fits a fixed slot of {@code max-packet-bytes} plus a 4 byte length header.
+ * An upload is read straight into the mapped memory of its slot, and freeing a
+ * packet only clears the header and pushes the slot index back onto a
+ * lock-free free list. There is no fragmentation and nothing to vacuum.
+ *
+ * Slot layout:
+ *
+ * <pre>
+ * [4 bytes packet length, 0 = free][packet bytes][unused padding]
+ * </pre>
+ *
+ * The packet reference is the slot index. At startup the free list is rebuilt
+ * from the slot headers, reconciled with the packet references of the stored
+ * messages: a header is published before the message row commits, so a crash
+ * in between leaves an occupied slot that no message references, which is
+ * freed.
+ *
+ * Headers are read and written atomically, and a slot is only pushed back onto
+ * the free list by the delete that clears its header, so deleting the same
+ * packet twice, even concurrently, never frees its slot twice.
+ *
+ * Enabled with {@code hermnet.packet-store.type=mapped-arena}.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.packet-store.type", havingValue = "mapped-arena")
+@RequiredArgsConstructor
+@Slf4j
+public class MappedArenaPacketStore implements PacketStore {
+
+    private static final int HEADER_BYTES = Integer.BYTES;
+    private static final int EMPTY = -1;
+
+    /** Atomic access to the slot headers, in the buffers' big-endian order. */
+    private static final VarHandle HEADER = MethodHandles.byteBufferViewVarHandle(int[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private final MessageRepository messageRepository;
+
+    @Value("${hermnet.packet-store.mapped-arena.file:packets.arena}")
+    private String file;
+
+    @Value("${hermnet.packet-store.mapped-arena.slot-count:4096}")
+    private int slotCount;
+
+    @Value("${hermnet.mailbox.max-packet-bytes:2097152}")
+    private int maxPacketBytes;
+
+    private int slotBytes;
+    private int slotsPerMapping;
+    private MappedByteBuffer[] mappings;
+
+    /** Next free slot for each slot on the free list. */
+    private AtomicIntegerArray next;
+
+    /** Top of the free list: a modification stamp (high bits) and a slot index (low bits). */
+    private final AtomicLong head = new AtomicLong(EMPTY & 0xFFFFFFFFL);
+
+    /**
+     * Maps the arena file, creating it if needed, frees the slots no message
+     * references and rebuilds the free list.
+     *
+     * @throws IOException If the arena file cannot be created or mapped.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path path = Paths.get(file).toAbsolutePath().normalize();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        // Rounded up so every header is aligned for atomic access
+        slotBytes = (HEADER_BYTES + maxPacketBytes + 3) & ~3;
+        // A single mapping cannot exceed 2 GB, so large arenas use several
+        slotsPerMapping = Integer.MAX_VALUE / slotBytes;
+        mappings = new MappedByteBuffer[(slotCount + slotsPerMapping - 1) / slotsPerMapping];
+        next = new AtomicIntegerArray(slotCount);
+
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.setLength((long) slotCount * slotBytes);
+            FileChannel channel = raf.getChannel();
+            for (int i = 0; i < mappings.length; i++) {
+                int slots = Math.min(slotsPerMapping, slotCount - i * slotsPerMapping);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slotsPerMapping * slotBytes,
+                        (long) slots * slotBytes);
+            }
+        }
+
+        BitSet referenced = referencedSlots();
+        int leaked = 0;
+        // Push in reverse so that low slots are handed out first
+        for (int slot = slotCount - 1; slot >= 0; slot--) {
+            MappedByteBuffer mapping = mappingOf(slot);
+            int offset = offsetOf(slot);
+            if ((int) HEADER.getVolatile(mapping, offset) != 0 && !referenced.get(slot)) {
+                HEADER.setVolatile(mapping, offset, 0);
+                mapping.force(offset, HEADER_BYTES);
+                leaked++;
+            }
+            if ((int) HEADER.getVolatile(mapping, offset) == 0) {
+                push(slot);
+            }
+        }
+        if (leaked > 0) {
+            log.info("Freed {} packet arena slots not referenced by any message", leaked);
+        }
+    }
+
+    /**
+     * Returns the slots referenced by stored messages. References that are not
+     * slot indexes were written by another packet store and are ignored.
+     */
+    private BitSet referencedSlots() {
+        BitSet referenced = new BitSet(slotCount);
+        for (String ref : messageRepository.findDistinctPacketRefs()) {
+            try {
+                int slot = Integer.parseInt(ref);
+                if (slot >= 0 && slot < slotCount) {
+                    referenced.set(slot);
+                }
+            } catch (NumberFormatException e) {
+                // not an arena reference
+            }
+        }
+        return referenced;
+    }
+
+    @Override
+    public long store(String recipientHash, InputStream packet) {
+        int slot = pop();
+        if (slot == EMPTY) {
+            throw new PacketStoreFullException("Packet arena is full");
+        }
+
+        int length;
+        try {
+            length = write(slot, packet);
+        } catch (IOException | RuntimeException e) {
+            push(slot);
+            throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+        }
+
+        String ref = Integer.toString(slot);
+        RollbackCleanup.onRollback(() -> delete(List.of(ref)));
+
+        Message message = Message.builder()
+                .recipientHash(recipientHash)
+                .packetRef(ref)
+                .packetSize((long) length)
+                .build();
+
+        return messageRepository.save(message).getMessageId();
+    }
+
+    @Override
+    public long size(Message message) {
+        return message.getPacketSize();
+    }
+
+    @Override
+    public InputStream open(Message message) {
+        return new ByteBufferInputStream(packetOf(message));
+    }
+
+    @Override
+    public void transferTo(Message message, WritableByteChannel target) throws IOException {
+        ByteBuffer packet = packetOf(message);
+        while (packet.hasRemaining()) {
+            target.write(packet);
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> packetRefs) {
+        for (String ref : packetRefs) {
+            if (ref == null) {
+                continue;
+            }
+            int slot = parseSlot(ref);
+            MappedByteBuffer mapping = mappingOf(slot);
+            int offset = offsetOf(slot);
+            int length = (int) HEADER.getVolatile(mapping, offset);
+            // Only the delete that clears the header frees the slot
+            if (length == 0 || !HEADER.compareAndSet(mapping, offset, length, 0)) {
+                continue;
+            }
+            mapping.force(offset, HEADER_BYTES);
+            push(slot);
+        }
+    }
+
+    /**
+     * Reads the packet into the slot and publishes its length header once the
+     * bytes are durable.
+     */
+    private int write(int slot, InputStream packet) throws IOException {
+        MappedByteBuffer mapping = mappingOf(slot);
+        int offset = offsetOf(slot);
+        ByteBuffer body = mapping.slice(offset + HEADER_BYTES, maxPacketBytes);
+        PacketBufferPool.fill(packet, body);
+
+        int length = body.position();
+        mapping.force(offset + HEADER_BYTES, length);
+        HEADER.setVolatile(mapping, offset, length);
+        mapping.force(offset, HEADER_BYTES);
+        return length;
+    }
+
+    private ByteBuffer packetOf(Message message) {
+        int slot = parseSlot(message.getPacketRef());
+        MappedByteBuffer mapping = mappingOf(slot);
+        int offset = offsetOf(slot);
+        return mapping.slice(offset + HEADER_BYTES, (int) HEADER.getVolatile(mapping, offset));
+    }
+
+    private int parseSlot(String ref) {
+        int slot = Integer.parseInt(ref);
+        if (slot < 0 || slot >= slotCount) {
+            throw new IllegalArgumentException("Invalid packet reference: " + ref);
+        }
+        return slot;
+    }
+
+    private MappedByteBuffer mappingOf(int slot) {
+        return mappings[slot / slotsPerMapping];
+    }
+
+    private int offsetOf(int slot) {
+        return (slot % slotsPerMapping) * slotBytes;
+    }
+
+    /**
+     * Treiber stack pop. The stamp in the high bits of {@link #head} changes on
+     * every update, so a slot that is popped and pushed back between a read and
+     * the CAS cannot cause an ABA corruption.
+     */
+    private int pop() {
+        while (true) {
+            long current = head.get();
+            int slot = (int) current;
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            long updated = stamp(current) | (next.get(slot) & 0xFFFFFFFFL);
+            if (head.compareAndSet(current, updated)) {
+                return slot;
+            }
+        }
+    }
+
+    private void push(int slot) {
+        while (true) {
+            long current = head.get();
+            next.set(slot, (int) current);
+            long updated = stamp(current) | (slot & 0xFFFFFFFFL);
+            if (head.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static long stamp(long head) {
+        return ((head >>> 32) + 1) << 32;
+    }
+}
@@ -0,0 +1,133 @@
+package com.hermnet.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool of direct buffers sized to hold one packet.
+ *
+ * Stego packets are around a megabyte and a half, more than half a G1 region
+ * at common heap sizes, so every packet-sized {@code byte[]} is a humongous
+ * allocation. Packet stores stage uploads in these reusable off-heap buffers
+ * instead, and the number of buffers also bounds how many uploads are staged
+ * at once. Buffers are allocated on first use, up to the configured count;
+ * once all are in use, callers wait for one to be released, for at most the
+ * acquire timeout. A caller that times out gets a
+ * {@link PacketStoreFullException}, so a burst of slow uploads turns into 503
+ * responses instead of request threads parked indefinitely.
+ */
+@Component
+public class PacketBufferPool {
+
+    private final int capacity;
+    private final int bufferBytes;
+    private final Duration acquireTimeout;
+    private final BlockingQueue<ByteBuffer> free;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public PacketBufferPool(@Value("${hermnet.packet-store.staging-buffers:8}") int capacity,
+            @Value("${hermnet.mailbox.max-packet-bytes:2097152}") int bufferBytes,
+            @Value("${hermnet.packet-store.staging-timeout:PT5S}") Duration acquireTimeout) {
+        this.capacity = capacity;
+        this.bufferBytes = bufferBytes;
+        this.acquireTimeout = acquireTimeout;
+        this.free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Takes a cleared buffer of {@link #bufferBytes()} bytes from the pool,
+     * waiting up to the acquire timeout if all buffers are in use.
+     *
+     * @return A buffer to be returned with {@link #release(ByteBuffer)}.
+     * @throws PacketStoreFullException If no buffer was released in time.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocated.getAndUpdate(n -> n < capacity ? n + 1 : n) < capacity) {
+            return ByteBuffer.allocateDirect(bufferBytes);
+        }
+        try {
+            buffer = free.poll(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a packet buffer", e);
+        }
+        if (buffer == null) {
+            throw new PacketStoreFullException("No packet buffer available");
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads a packet into a buffer from the pool.
+     *
+     * @param packet The packet bytes, read until EOF.
+     * @return A flipped buffer holding the packet, to be returned with
+     *         {@link #release(ByteBuffer)}.
+     * @throws IOException              If the packet cannot be read or does not
+     *                                  fit in a buffer.
+     * @throws PacketStoreFullException If no buffer was released in time.
+     */
+    public ByteBuffer read(InputStream packet) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            fill(packet, buffer);
+        } catch (IOException | RuntimeException e) {
+            release(buffer);
+            throw e;
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Returns a buffer taken with {@link #acquire()} to the pool.
+     *
+     * @param buffer The buffer to release.
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.add(buffer);
+    }
+
+    /**
+     * Returns the size of the pooled buffers, which is the maximum packet size.
+     *
+     * @return The buffer size in bytes.
+     */
+    public int bufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * Reads a stream into the remaining space of a buffer.
+     *
+     * @param packet The packet bytes, read until EOF but not closed.
+     * @param target The buffer to fill.
+     * @throws IOException If the stream fails or holds more bytes than fit.
+     */
+    static void fill(InputStream packet, ByteBuffer target) throws IOException {
+        int limit = target.remaining();
+        // Not closed: closing the channel would close the caller's stream
+        ReadableByteChannel source = Channels.newChannel(packet);
+        while (target.hasRemaining() && source.read(target) >= 0) {
+            // keep reading until the buffer is full or the stream ends
+        }
+        if (!target.hasRemaining() && packet.read() != -1) {
+            throw new IOException("Packet exceeds " + limit + " bytes");
+        }
+    }
+}
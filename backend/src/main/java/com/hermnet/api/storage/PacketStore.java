@@ -0,0 +1,100 @@
+package com.hermnet.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.hermnet.api.model.Message;
+
+/**
+ * Storage backend for stego packets.
+ *
+ * Decouples where packet bytes live from the {@code mailbox} table. Each
+ * backend creates the mailbox entry for a new packet and decides whether the
+ * row carries the bytes themselves ({@link Message#getStegoPacket()}) or only
+ * a reference to them ({@link Message#getPacketRef()}).
+ *
+ * The active backend is selected with the {@code hermnet.packet-store.type}
+ * property.
+ */
+public interface PacketStore {
+
+    /**
+     * Stores a packet and creates the mailbox entry referencing it.
+     *
+     * The stream is consumed until EOF. Must be called inside a transaction; if
+     * the transaction rolls back, the packet must not remain stored.
+     *
+     * @param recipientHash The hashed ID of the recipient.
+     * @param packet        The packet bytes.
+     * @return The ID of the created message.
+     * @throws java.io.UncheckedIOException If the packet cannot be read or written.
+     */
+    long store(String recipientHash, InputStream packet);
+
+    /**
+     * Stores several packets and creates their mailbox entries, as
+     * {@link #store(String, InputStream)} would for each of them.
+     *
+     * The default stores them one by one; backends that can create the entries
+     * in a single round trip should override this.
+     *
+     * @param uploads The packets and their recipients.
+     * @return The IDs of the created messages, in the order of the uploads.
+     * @throws java.io.UncheckedIOException If a packet cannot be read or written.
+     */
+    default List<Long> storeAll(List<PacketUpload> uploads) {
+        List<Long> messageIds = new ArrayList<>(uploads.size());
+        for (PacketUpload upload : uploads) {
+            messageIds.add(store(upload.recipientHash(), upload.packet()));
+        }
+        return messageIds;
+    }
+
+    /**
+     * Returns the size in bytes of a message's packet.
+     *
+     * @param message The mailbox entry.
+     * @return The packet size.
+     */
+    long size(Message message);
+
+    /**
+     * Opens the packet of a message for reading.
+     *
+     * @param message The mailbox entry.
+     * @return A stream over the packet bytes, to be closed by the caller.
+     * @throws IOException If the packet cannot be opened.
+     */
+    InputStream open(Message message) throws IOException;
+
+    /**
+     * Writes the packet of a message to the given channel.
+     *
+     * Backends that keep packets outside the heap should override this to hand
+     * the transfer to the operating system.
+     *
+     * @param message The mailbox entry.
+     * @param target  The channel to write to.
+     * @throws IOException If the packet cannot be read or written.
+     */
+    default void transferTo(Message message, WritableByteChannel target) throws IOException {
+        try (InputStream in = open(message)) {
+            OutputStream out = Channels.newOutputStream(target);
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Releases the storage of packets whose mailbox entries have been deleted.
+     *
+     * @param packetRefs The references of the deleted packets; null entries are
+     *                   ignored.
+     */
+    void delete(Collection<String> packetRefs);
+}
@@ -0,0 +1,11 @@
+package com.hermnet.api.storage;
+
+/**
+ * Thrown when a packet store has no capacity left for a new packet.
+ */
+public class PacketStoreFullException extends RuntimeException {
+
+    public PacketStoreFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.hermnet.api.storage;
+
+import java.io.InputStream;
+
+/**
+ * A packet to be stored in a recipient's mailbox.
+ *
+ * @param recipientHash The hashed ID of the recipient.
+ * @param packet        The packet bytes.
+ */
+public record PacketUpload(String recipientHash, InputStream packet) {
+}
@@ -0,0 +1,34 @@
+package com.hermnet.api.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helper for packet stores that write packet bytes before the mailbox row
+ * referencing them is committed.
+ */
+final class RollbackCleanup {
+
+    private RollbackCleanup() {
+    }
+
+    /**
+     * Runs the given cleanup if the current transaction does not commit. Does
+     * nothing when no transaction is active.
+     *
+     * @param cleanup Releases the packet written in the current transaction.
+     */
+    static void onRollback(Runnable cleanup) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    cleanup.run();
+                }
+            }
+        });
+    }
+}
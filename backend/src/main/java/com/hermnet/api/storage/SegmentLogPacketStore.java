@@ -0,0 +1,586 @@
+package com.hermnet.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Log-structured packet store appending packets to fixed-size segment files.
+ *
+ * Mailbox traffic is write-once, read-once and deleted soon after, so packets
+ * are appended sequentially to the active segment instead of being written as
+ * individual rows or files. A segment is sealed once full by appending a
+ * footer with the offset and length of every record it holds. At startup the
+ * in-memory index of live records is rebuilt from those footers (unsealed
+ * segments left by a crash are scanned, truncated after the last complete
+ * record and sealed), and records that no message references are tombstoned.
+ *
+ * Deleted packets are recorded in a per-segment tombstone file. Space is
+ * reclaimed a whole segment at a time: a sealed segment is dropped as soon as
+ * none of its records is live. A record stays live for as long as its mailbox
+ * row exists, however old it is, so a packet is never lost while it can still
+ * be synced. A dropped segment's file is closed and deleted once the last
+ * reader using it has finished.
+ *
+ * Segment layout:
+ *
+ * <pre>
+ * record  := [4 bytes RECORD_MAGIC][4 bytes length][packet bytes]
+ * footer  := ([8 bytes record offset][4 bytes length])* [4 bytes count][8 bytes footer offset][4 bytes FOOTER_MAGIC]
+ * </pre>
+ *
+ * Packet references have the form {@code segmentId:offset:length}, where
+ * offset points at the first packet byte. Routing metadata (the recipient hash)
+ * stays in the {@code mailbox} table and is never written to segments.
+ *
+ * Enabled with {@code hermnet.packet-store.type=segment-log}.
+ */
+@Component
+@ConditionalOnProperty(name = "hermnet.packet-store.type", havingValue = "segment-log")
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentLogPacketStore implements PacketStore {
+
+    private static final int RECORD_MAGIC = 0x484E5052; // "HNPR"
+    private static final int FOOTER_MAGIC = 0x484E5346; // "HNSF"
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int FOOTER_ENTRY_BYTES = 12;
+    private static final int TRAILER_BYTES = 16;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String TOMBSTONE_SUFFIX = ".dead";
+
+    private final MessageRepository messageRepository;
+    private final PacketBufferPool bufferPool;
+
+    @Value("${hermnet.packet-store.segment-log.directory:segments}")
+    private String directory;
+
+    @Value("${hermnet.packet-store.segment-log.segment-bytes:268435456}")
+    private long segmentBytes;
+
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private Path root;
+    private Segment active;
+
+    /**
+     * Recovers existing segments, tombstones the records no message references
+     * and opens a new active segment.
+     *
+     * @throws IOException If the segment directory cannot be read or written.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        long lastId = 0;
+        for (Map.Entry<Long, Path> entry : listSegments().entrySet()) {
+            recover(entry.getKey(), entry.getValue());
+            lastId = entry.getKey();
+        }
+        reconcile();
+
+        active = openSegment(lastId + 1);
+    }
+
+    /**
+     * Seals the active segment and closes all segment files.
+     */
+    @PreDestroy
+    public void close() {
+        appendLock.lock();
+        try {
+            seal(active);
+        } catch (IOException e) {
+            log.warn("Failed to seal segment {} on shutdown", active.id, e);
+        } finally {
+            appendLock.unlock();
+        }
+        segments.values().forEach(Segment::closeQuietly);
+    }
+
+    @Override
+    public long store(String recipientHash, InputStream packet) {
+        String ref;
+        int length;
+
+        try {
+            // Read the upload outside the append lock, so slow clients never
+            // hold up other writers
+            ByteBuffer buffer = bufferPool.read(packet);
+            try {
+                length = buffer.remaining();
+                ref = append(buffer);
+            } finally {
+                bufferPool.release(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        RollbackCleanup.onRollback(() -> delete(List.of(ref)));
+
+        Message message = Message.builder()
+                .recipientHash(recipientHash)
+                .packetRef(ref)
+                .packetSize((long) length)
+                .build();
+
+        return messageRepository.save(message).getMessageId();
+    }
+
+    @Override
+    public long size(Message message) {
+        return message.getPacketSize();
+    }
+
+    @Override
+    public InputStream open(Message message) throws IOException {
+        Location location = Location.parse(message.getPacketRef());
+        Segment segment = retain(location);
+        try {
+            // Mapped rather than read into a packet-sized array on the heap. The
+            // mapping stays valid after the channel is closed, so the segment
+            // only needs to be retained while it is created.
+            return new ByteBufferInputStream(
+                    segment.channel.map(FileChannel.MapMode.READ_ONLY, location.offset, location.length));
+        } finally {
+            segment.release();
+        }
+    }
+
+    @Override
+    public void transferTo(Message message, WritableByteChannel target) throws IOException {
+        Location location = Location.parse(message.getPacketRef());
+        Segment segment = retain(location);
+        try {
+            long position = location.offset;
+            long end = location.offset + location.length;
+            while (position < end) {
+                position += segment.channel.transferTo(position, end - position, target);
+            }
+        } finally {
+            segment.release();
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> packetRefs) {
+        for (String ref : packetRefs) {
+            if (ref == null) {
+                continue;
+            }
+            Location location = Location.parse(ref);
+            Segment segment = segments.get(location.segmentId);
+            if (segment == null || !segment.live.remove(location.offset)) {
+                continue;
+            }
+            try {
+                segment.recordTombstone(location.offset);
+            } catch (IOException e) {
+                log.warn("Failed to record tombstone in segment {}", segment.id, e);
+            }
+            if (segment.sealed && segment.live.isEmpty()) {
+                drop(segment);
+            }
+        }
+    }
+
+    /**
+     * Rolls the active segment once every record in it has been deleted, so its
+     * file is dropped instead of waiting for enough traffic to fill it.
+     */
+    @Scheduled(fixedDelayString = "${hermnet.packet-store.segment-log.sweep-interval:PT10M}")
+    public void reclaimIdleSegment() {
+        appendLock.lock();
+        try {
+            if (active.position > 0 && active.live.isEmpty()) {
+                roll();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to roll idle segment {}", active.id, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private String append(ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        long recordBytes = RECORD_HEADER_BYTES + (long) length;
+        Segment segment;
+        long offset;
+
+        appendLock.lock();
+        try {
+            if (active.position > 0 && active.position + recordBytes > segmentBytes) {
+                roll();
+            }
+            segment = active;
+
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES).putInt(RECORD_MAGIC).putInt(length).flip();
+            offset = segment.position + RECORD_HEADER_BYTES;
+            writeFully(segment.channel, header, payload);
+
+            segment.position += recordBytes;
+            segment.entries.add(new long[] { offset, length });
+            segment.live.add(offset);
+        } finally {
+            appendLock.unlock();
+        }
+
+        // Outside the lock: concurrent appenders share the cost of the flush
+        segment.channel.force(false);
+
+        return new Location(segment.id, offset, length).toString();
+    }
+
+    private void seal(Segment segment) throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(segment.entries.size() * FOOTER_ENTRY_BYTES + TRAILER_BYTES);
+        for (long[] entry : segment.entries) {
+            footer.putLong(entry[0]).putInt((int) entry[1]);
+        }
+        footer.putInt(segment.entries.size()).putLong(segment.position).putInt(FOOTER_MAGIC).flip();
+
+        writeFully(segment.channel, footer);
+        segment.channel.force(true);
+        segment.entries.clear();
+        segment.sealed = true;
+    }
+
+    /**
+     * Seals the active segment and starts a new one. Must be called while
+     * holding the append lock.
+     */
+    private void roll() throws IOException {
+        Segment sealed = active;
+        seal(sealed);
+        active = openSegment(sealed.id + 1);
+
+        // Every record may have been deleted before the segment was sealed
+        if (sealed.live.isEmpty()) {
+            drop(sealed);
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = root.resolve(segmentName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void recover(long id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, path, channel);
+        segments.put(id, segment);
+
+        List<long[]> entries = readFooter(channel);
+        if (entries == null) {
+            entries = scan(channel);
+            segment.position = channel.position();
+            segment.entries.addAll(entries);
+            seal(segment);
+            log.info("Recovered unsealed segment {} with {} records", id, entries.size());
+        } else {
+            segment.sealed = true;
+        }
+
+        Set<Long> dead = readTombstones(segment.tombstonePath());
+        for (long[] entry : entries) {
+            if (!dead.contains(entry[0])) {
+                segment.live.add(entry[0]);
+            }
+        }
+
+        if (segment.live.isEmpty()) {
+            drop(segment);
+        }
+    }
+
+    /**
+     * Tombstones the recovered records that no message references. A record is
+     * appended before its message row commits and deleted only after the
+     * acknowledgement commits, so a crash in between leaves a record nobody
+     * will ever delete, which would keep its whole segment forever.
+     */
+    private void reconcile() throws IOException {
+        Map<Long, Set<Long>> referenced = new HashMap<>();
+        for (String ref : messageRepository.findDistinctPacketRefs()) {
+            Location location;
+            try {
+                location = Location.parse(ref);
+            } catch (IllegalArgumentException e) {
+                // not a segment reference
+                continue;
+            }
+            referenced.computeIfAbsent(location.segmentId, id -> new HashSet<>()).add(location.offset);
+        }
+
+        int orphaned = 0;
+        for (Segment segment : List.copyOf(segments.values())) {
+            Set<Long> offsets = referenced.getOrDefault(segment.id, Set.of());
+            for (Long offset : List.copyOf(segment.live)) {
+                if (!offsets.contains(offset)) {
+                    segment.live.remove(offset);
+                    segment.recordTombstone(offset);
+                    orphaned++;
+                }
+            }
+            if (segment.live.isEmpty()) {
+                drop(segment);
+            }
+        }
+        if (orphaned > 0) {
+            log.info("Tombstoned {} segment records not referenced by any message", orphaned);
+        }
+    }
+
+    private List<long[]> readFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < TRAILER_BYTES) {
+            return null;
+        }
+
+        ByteBuffer trailer = readAt(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        int count = trailer.getInt();
+        long footerStart = trailer.getLong();
+        if (trailer.getInt() != FOOTER_MAGIC
+                || footerStart + (long) count * FOOTER_ENTRY_BYTES + TRAILER_BYTES != size) {
+            return null;
+        }
+
+        ByteBuffer footer = readAt(channel, footerStart, count * FOOTER_ENTRY_BYTES);
+        List<long[]> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new long[] { footer.getLong(), footer.getInt() });
+        }
+        return entries;
+    }
+
+    /**
+     * Scans the records of an unsealed segment and truncates it after the last
+     * complete record. Leaves the channel positioned at the new end.
+     */
+    private List<long[]> scan(FileChannel channel) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        long size = channel.size();
+        long position = 0;
+
+        while (position + RECORD_HEADER_BYTES <= size) {
+            ByteBuffer header = readAt(channel, position, RECORD_HEADER_BYTES);
+            int magic = header.getInt();
+            int length = header.getInt();
+            if (magic != RECORD_MAGIC || length < 0 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            entries.add(new long[] { position + RECORD_HEADER_BYTES, length });
+            position += RECORD_HEADER_BYTES + length;
+        }
+
+        channel.truncate(position);
+        channel.position(position);
+        return entries;
+    }
+
+    private Set<Long> readTombstones(Path path) throws IOException {
+        Set<Long> dead = new HashSet<>();
+        if (Files.exists(path)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (buffer.remaining() >= Long.BYTES) {
+                dead.add(buffer.getLong());
+            }
+        }
+        return dead;
+    }
+
+    /**
+     * Removes a segment from the index. Its file is deleted once no reader is
+     * using it any more.
+     */
+    private void drop(Segment segment) {
+        if (segments.remove(segment.id, segment)) {
+            segment.release();
+        }
+    }
+
+    /**
+     * Looks up the segment holding a packet and keeps its file open until
+     * {@link Segment#release()} is called.
+     */
+    private Segment retain(Location location) throws IOException {
+        Segment segment = segments.get(location.segmentId);
+        if (segment == null || !segment.retain()) {
+            throw new IOException("Segment " + location.segmentId + " no longer exists");
+        }
+        return segment;
+    }
+
+    private Map<Long, Path> listSegments() throws IOException {
+        Map<Long, Path> found = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                found.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), path);
+            }
+        }
+        return found;
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%016d%s", id, SEGMENT_SUFFIX);
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * An open segment file and the in-memory index of its records.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+
+        /** Offsets of records that are still referenced by a mailbox entry. */
+        private final Set<Long> live = ConcurrentHashMap.newKeySet();
+
+        /** Offset and length of every record, kept until the footer is written. */
+        private final List<long[]> entries = new ArrayList<>();
+
+        private final ReentrantLock tombstoneLock = new ReentrantLock();
+
+        /** Readers using the file, plus one held by the index until the segment is dropped. */
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private long position;
+        private volatile boolean sealed;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private Path tombstonePath() {
+            return path.resolveSibling(path.getFileName().toString().replace(SEGMENT_SUFFIX, TOMBSTONE_SUFFIX));
+        }
+
+        private void recordTombstone(long offset) throws IOException {
+            tombstoneLock.lock();
+            try (FileChannel tombstones = FileChannel.open(tombstonePath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(tombstones, ByteBuffer.allocate(Long.BYTES).putLong(offset).flip());
+            } finally {
+                tombstoneLock.unlock();
+            }
+        }
+
+        /**
+         * Adds a reader, unless the segment has been dropped and released.
+         */
+        private boolean retain() {
+            for (int count = references.get(); count > 0; count = references.get()) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Removes a reader, or the reference held by the index. The last one
+         * closes and deletes the segment files.
+         */
+        private void release() {
+            if (references.decrementAndGet() > 0) {
+                return;
+            }
+            closeQuietly();
+            try {
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(tombstonePath());
+            } catch (IOException e) {
+                log.warn("Failed to delete segment {}", id, e);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Position of a packet inside a segment, encoded as its packet reference.
+     */
+    private record Location(long segmentId, long offset, int length) {
+
+        private static Location parse(String ref) {
+            String[] parts = ref.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid packet reference: " + ref);
+            }
+            return new Location(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        }
+
+        @Override
+        public String toString() {
+            return segmentId + ":" + offset + ":" + length;
+        }
+    }
+}
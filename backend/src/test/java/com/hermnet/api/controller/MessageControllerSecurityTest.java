@@ -5,12 +5,13 @@ import com.hermnet.api.config.SecurityConfig;
 import com.hermnet.api.dto.SendMessageRequest;
 import com.hermnet.api.security.JwtAuthenticationFilter;
 import com.hermnet.api.security.JwtTokenProvider;
-import com.hermnet.api.repository.MessageRepository;
-import com.hermnet.api.model.Message;
-import com.hermnet.api.model.Message;
 import com.hermnet.api.config.IpAnonymizationFilter;
 import com.hermnet.api.repository.UserRepository;
-import com.hermnet.api.service.NotificationService;
+import com.hermnet.api.service.LiveDeliveryRegistry;
+import com.hermnet.api.service.MailboxService;
+import com.hermnet.api.service.MailboxVersions;
+import com.hermnet.api.service.PendingMailboxIndex;
+import com.hermnet.api.service.MailboxWatchRegistry;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
@@ -38,13 +39,22 @@ public class MessageControllerSecurityTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private MessageRepository messageRepository;
+    private UserRepository userRepository;
 
     @MockBean
-    private UserRepository userRepository;
+    private MailboxService mailboxService;
+
+    @MockBean
+    private MailboxWatchRegistry watchRegistry;
+
+    @MockBean
+    private LiveDeliveryRegistry liveDelivery;
+
+    @MockBean
+    private MailboxVersions versions;
 
     @MockBean
-    private NotificationService notificationService;
+    private PendingMailboxIndex pendingIndex;
 
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
@@ -83,7 +93,6 @@ public class MessageControllerSecurityTest {
 
         when(jwtTokenProvider.validateToken(token)).thenReturn(true);
         when(jwtTokenProvider.getUserIdFromToken(token)).thenReturn("user1");
-        when(messageRepository.save(any(Message.class))).thenReturn(new Message());
 
         mockMvc.perform(post("/api/messages")
                 .header("Authorization", "Bearer " + token)
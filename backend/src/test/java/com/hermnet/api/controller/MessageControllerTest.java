@@ -1,72 +1,108 @@
 package com.hermnet.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hermnet.api.dto.MailboxSummaryResponse;
+import com.hermnet.api.dto.MessageListResponse;
+import com.hermnet.api.dto.MessageMetadata;
+import com.hermnet.api.dto.NewMessageEvent;
 import com.hermnet.api.dto.SendMessageRequest;
-import com.hermnet.api.model.Message;
-import com.hermnet.api.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
-import com.hermnet.api.model.User;
 import com.hermnet.api.repository.UserRepository;
-import com.hermnet.api.service.NotificationService;
+import com.hermnet.api.service.LiveDeliveryRegistry;
+import com.hermnet.api.service.MailboxService;
+import com.hermnet.api.service.MailboxVersions;
+import com.hermnet.api.service.PendingMailboxIndex;
+import com.hermnet.api.service.MailboxWatchRegistry;
+import com.hermnet.api.service.PacketTooLargeException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MessageController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import({ MailboxWatchRegistry.class, LiveDeliveryRegistry.class, MailboxVersions.class })
 public class MessageControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
-    @MockBean
-    private MessageRepository messageRepository;
+    @Autowired
+    private MailboxWatchRegistry watchRegistry;
+
+    @Autowired
+    private LiveDeliveryRegistry liveDelivery;
+
+    @Autowired
+    private MailboxVersions versions;
 
     @MockBean
     private UserRepository userRepository;
 
     @MockBean
-    private NotificationService notificationService;
+    private MailboxService mailboxService;
 
     @MockBean
     private com.hermnet.api.security.JwtTokenProvider jwtTokenProvider;
 
+    @MockBean
+    private PendingMailboxIndex pendingIndex;
+
+    @BeforeEach
+    public void setUp() {
+        when(pendingIndex.mayHaveMail(anyString())).thenReturn(true);
+    }
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Test
-    public void sendMessage_ShouldReturn202_AndTriggerNotification_WhenRequestIsValid() throws Exception {
+    public void sendMessage_ShouldReturn202_AndStorePacket_WhenRequestIsValid() throws Exception {
         SendMessageRequest request = new SendMessageRequest("HNET-VALID", new byte[] { 1, 2, 3 });
-        User mockUser = new User();
-        mockUser.setPushToken("test-push-token");
 
-        when(messageRepository.save(any(Message.class))).thenReturn(new Message());
-        when(userRepository.findById("HNET-VALID")).thenReturn(Optional.of(mockUser));
+        when(mailboxService.storePacket(eq("HNET-VALID"), any(), eq(3L))).thenReturn(1L);
 
         mockMvc.perform(post("/api/messages")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isAccepted());
 
-        // Verify notification service was called
-        // We use reflection or verify because the exact method name might vary if I
-        // didn't memorize it perfectly,
-        // but based on Step 279 it is sendSyncNotification
-        // Let's create a more robust verification in a separate block if needed, but
-        // here simple verification works.
+        verify(mailboxService).storePacket(eq("HNET-VALID"), any(), eq(3L));
     }
 
     @Test
@@ -102,14 +138,401 @@ public class MessageControllerTest {
     @Test
     public void getMessages_ShouldReturnList_WhenUserHasMessages() throws Exception {
         String myId = "HNET-VALID";
-        Message msg1 = Message.builder().stegoPacket(new byte[] { 1 }).createdAt(LocalDateTime.now()).build();
-        Message msg2 = Message.builder().stegoPacket(new byte[] { 2 }).createdAt(LocalDateTime.now()).build();
 
-        when(messageRepository.findByRecipientHashOrderByCreatedAtDesc(myId))
-                .thenReturn(List.of(msg1, msg2));
+        doAnswer(invocation -> {
+            JsonGenerator json = invocation.getArgument(3);
+            json.writeStartObject();
+            json.writeArrayFieldStart("messages");
+            json.writeStartObject();
+            json.writeNumberField("messageId", 8L);
+            json.writeBinaryField("stegoImage", new byte[] { 1 });
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeNumberField("next", 8L);
+            json.writeEndObject();
+            return null;
+        }).when(mailboxService).writePackets(eq(myId), eq(7L), eq(1), any());
+
+        MvcResult result = mockMvc.perform(get("/api/messages")
+                .param("myId", myId)
+                .param("after", "7")
+                .param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.messages.length()").value(1))
+                .andExpect(jsonPath("$.messages[0].stegoImage").value("AQ=="))
+                .andExpect(jsonPath("$.next").value(8));
+    }
+
+    @Test
+    public void getMessages_ShouldReturn304_WhenMailboxVersionIsUnchanged() throws Exception {
+        String etag = versions.etag("HNET-VALID");
 
         mockMvc.perform(get("/api/messages")
-                .param("myId", myId))
+                .param("myId", "HNET-VALID")
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void getMessages_ShouldReturnNewETag_WhenMailboxChanged() throws Exception {
+        String etag = versions.etag("HNET-VALID");
+        versions.bump("HNET-VALID");
+
+        MvcResult result = mockMvc.perform(get("/api/messages")
+                .param("myId", "HNET-VALID")
+                .header("If-None-Match", etag))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("ETag", versions.etag("HNET-VALID")))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk());
+        verify(mailboxService).writePackets(eq("HNET-VALID"), eq(0L), isNull(), any());
+    }
+
+    @Test
+    public void getMessages_ShouldAnswerEmptyPage_WhenIndexKnowsMailboxIsEmpty() throws Exception {
+        when(pendingIndex.mayHaveMail("HNET-VALID")).thenReturn(false);
+
+        MvcResult result = mockMvc.perform(get("/api/messages")
+                .param("myId", "HNET-VALID"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(0))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void checkMessages_ShouldReturn204_WhenMailboxIsEmpty() throws Exception {
+        when(pendingIndex.mayHaveMail("HNET-VALID")).thenReturn(false);
+
+        mockMvc.perform(head("/api/messages")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    public void checkMessages_ShouldCheckAuthenticatedMailbox_WhenAnotherIdIsRequested() throws Exception {
+        when(pendingIndex.mayHaveMail("HNET-VALID")).thenReturn(false);
+        when(pendingIndex.count("HNET-OTHER")).thenReturn(3);
+
+        mockMvc.perform(head("/api/messages")
+                .param("myId", "HNET-OTHER")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().doesNotExist("X-Pending-Messages"));
+        verify(pendingIndex, never()).mayHaveMail("HNET-OTHER");
+    }
+
+    @Test
+    public void checkMessages_ShouldReturnPendingCount_WhenMailboxHasMail() throws Exception {
+        when(pendingIndex.count("HNET-VALID")).thenReturn(3);
+
+        mockMvc.perform(head("/api/messages")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Pending-Messages", "3"));
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void getMessages_ShouldReturn400_WhenLimitIsNotPositive() throws Exception {
+        mockMvc.perform(get("/api/messages")
+                .param("myId", "HNET-VALID")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void streamMessages_ShouldReturnOctetStream_AndDelegateToMailboxService() throws Exception {
+        String myId = "HNET-VALID";
+
+        MvcResult result = mockMvc.perform(get("/api/messages/stream")
+                .principal(() -> myId)
+                .param("myId", "HNET-OTHER"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM));
+
+        verify(mailboxService).streamMailbox(eq(myId), eq(0L), isNull(), any());
+    }
+
+    @Test
+    public void leaseMessages_ShouldLeaseForAuthenticatedRecipient() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/messages/lease")
+                .principal(() -> "HNET-VALID")
+                .param("limit", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM));
+
+        verify(mailboxService).leaseMailbox(eq("HNET-VALID"), eq(5), any());
+    }
+
+    @Test
+    public void leaseMessages_ShouldReturn400_WhenLimitIsNotPositive() throws Exception {
+        mockMvc.perform(post("/api/messages/lease")
+                .principal(() -> "HNET-VALID")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void listMessages_ShouldReturnMetadataWithoutPackets() throws Exception {
+        MessageListResponse page = new MessageListResponse(
+                List.of(new MessageMetadata(7L, LocalDateTime.of(2026, 1, 1, 12, 0), 512L)), null);
+        when(mailboxService.listMessages("HNET-VALID", 0L, null)).thenReturn(page);
+
+        mockMvc.perform(get("/api/messages/metadata")
+                .principal(() -> "HNET-VALID")
+                .param("myId", "HNET-OTHER"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageId").value(7))
+                .andExpect(jsonPath("$.messages[0].size").value(512))
+                .andExpect(jsonPath("$.messages[0].stegoImage").doesNotExist())
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void pollMessages_ShouldAnswerImmediately_WhenMessagesAreWaiting() throws Exception {
+        MessageListResponse page = new MessageListResponse(
+                List.of(new MessageMetadata(7L, LocalDateTime.now(), 512L)), null);
+        when(mailboxService.listMessages("HNET-VALID", 0L, null)).thenReturn(page);
+
+        MvcResult result = mockMvc.perform(get("/api/messages/poll")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageId").value(7));
+        assertEquals(0, watchRegistry.watchedMailboxes(), "Completed polls should stop watching");
+    }
+
+    @Test
+    public void pollMessages_ShouldPark_UntilPacketIsStoredForUser() throws Exception {
+        MessageListResponse empty = new MessageListResponse(List.of(), null);
+        MessageListResponse page = new MessageListResponse(
+                List.of(new MessageMetadata(8L, LocalDateTime.now(), 512L)), null);
+        when(mailboxService.listMessages("HNET-VALID", 7L, null)).thenReturn(empty, page);
+
+        MvcResult result = mockMvc.perform(get("/api/messages/poll")
+                .principal(() -> "HNET-VALID")
+                .param("after", "7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        watchRegistry.signal("HNET-OTHER");
+        assertEquals(1, watchRegistry.watchedMailboxes(), "Other recipients should not wake the poll");
+
+        watchRegistry.signal("HNET-VALID");
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageId").value(8));
+    }
+
+    @Test
+    public void liveMessages_ShouldStreamEvents_ForAuthenticatedUser() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/messages/live")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, liveDelivery.connectionCount());
+
+        liveDelivery.publish("HNET-OTHER", new NewMessageEvent(6L, 256L));
+        liveDelivery.publish("HNET-VALID", new NewMessageEvent(7L, 512L));
+
+        String expected = "event:message\nid:7\ndata:{\"messageId\":7,\"size\":512}\n\n";
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.getResponse().getContentAsString().equals(expected)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, result.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void getMessage_ShouldStreamPacket_WhenMessageBelongsToUser() throws Exception {
+        when(mailboxService.findMessage("HNET-VALID", 7L))
+                .thenReturn(Optional.of(new MessageMetadata(7L, LocalDateTime.now(), 3L)));
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write(new byte[] { 1, 2, 3 });
+            return null;
+        }).when(mailboxService).writePacket(eq("HNET-VALID"), eq(7L), any());
+
+        MvcResult result = mockMvc.perform(get("/api/messages/7")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(header().longValue("Content-Length", 3L))
+                .andExpect(content().bytes(new byte[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void getMessage_ShouldReturn404_WhenUserHasNoSuchMessage() throws Exception {
+        when(mailboxService.findMessage("HNET-VALID", 7L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/messages/7")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void summarizeMessages_ShouldReturnSummaryOfAuthenticatedRecipient() throws Exception {
+        when(mailboxService.summarize("HNET-VALID"))
+                .thenReturn(new MailboxSummaryResponse(3, 4096, LocalDateTime.of(2026, 1, 1, 12, 0)));
+
+        mockMvc.perform(get("/api/messages/summary")
+                .principal(() -> "HNET-VALID"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages").value(3))
+                .andExpect(jsonPath("$.bytes").value(4096))
+                .andExpect(jsonPath("$.oldestCreatedAt").exists());
+    }
+
+    @Test
+    public void acknowledgeMessages_ShouldDeleteForAuthenticatedRecipient() throws Exception {
+        when(mailboxService.acknowledge("HNET-VALID", null, 42L)).thenReturn(3);
+
+        mockMvc.perform(post("/api/messages/ack")
+                .principal(() -> "HNET-VALID")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"upTo\": 42}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(3));
+    }
+
+    @Test
+    public void acknowledgeMessages_ShouldReturn400_WhenHighWaterMarkIsNotPositive() throws Exception {
+        mockMvc.perform(post("/api/messages/ack")
+                .principal(() -> "HNET-VALID")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"upTo\": 0}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void uploadMessage_ShouldReturn202_AndStorePacket_WhenBodyIsStreamed() throws Exception {
+        when(mailboxService.storePacket(eq("HNET-VALID"), any(), anyLong())).thenReturn(1L);
+
+        mockMvc.perform(post("/api/messages")
+                .param("recipientId", "HNET-VALID")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isAccepted());
+
+        verify(mailboxService).storePacket(eq("HNET-VALID"), any(), eq(3L));
+    }
+
+    @Test
+    public void fanOutMessage_ShouldStorePacketOnce_ForEveryRecipient() throws Exception {
+        when(mailboxService.storeSharedPacket(eq(List.of("HNET-ALICE", "HNET-BOBBY")), any(), anyLong()))
+                .thenReturn(List.of(1L, 2L));
+
+        mockMvc.perform(post("/api/messages/fanout")
+                .param("recipientId", "HNET-ALICE", "HNET-BOBBY")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isAccepted());
+
+        verify(mailboxService).storeSharedPacket(eq(List.of("HNET-ALICE", "HNET-BOBBY")), any(), eq(3L));
+    }
+
+    @Test
+    public void sendMessages_ShouldStoreWholeBatch() throws Exception {
+        mockMvc.perform(post("/api/messages/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"messages\": ["
+                        + "{\"recipientId\": \"HNET-ALICE\", \"stegoImage\": \"AQID\"},"
+                        + "{\"recipientId\": \"HNET-BOBBY\", \"stegoImage\": \"BA==\"},"
+                        + "{\"recipientId\": \"HNET-ALICE\", \"stegoImage\": \"BQ==\"}]}"))
+                .andExpect(status().isAccepted());
+
+        verify(mailboxService).storePackets(argThat(messages -> messages.size() == 3));
+    }
+
+    @Test
+    public void sendMessages_ShouldReturn400_WhenAMessageIsInvalid() throws Exception {
+        mockMvc.perform(post("/api/messages/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"messages\": [{\"recipientId\": \"\", \"stegoImage\": \"AQID\"}]}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void fanOutMessage_ShouldReturn400_WhenARecipientIdIsBlank() throws Exception {
+        mockMvc.perform(post("/api/messages/fanout")
+                .param("recipientId", "HNET-ALICE", " ")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void uploadMessage_ShouldReturn400_WhenRecipientIdIsBlank() throws Exception {
+        mockMvc.perform(post("/api/messages")
+                .param("recipientId", " ")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void uploadMessage_ShouldReturn400_WhenRecipientIdIsMalformed() throws Exception {
+        mockMvc.perform(post("/api/messages")
+                .param("recipientId", "HNET-ALICE\nstored HNET-BOBBY 1 1")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mailboxService);
+    }
+
+    @Test
+    public void uploadMessage_ShouldReturn413_WhenPacketIsTooLarge() throws Exception {
+        when(mailboxService.storePacket(eq("HNET-VALID"), any(), anyLong()))
+                .thenThrow(new PacketTooLargeException(2));
+
+        mockMvc.perform(post("/api/messages")
+                .param("recipientId", "HNET-VALID")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] { 1, 2, 3 }))
+                .andExpect(status().isPayloadTooLarge());
     }
 }
@@ -24,7 +24,7 @@ class SendMessageRequestTest {
 
     @Test
     void shouldPassValidation_WhenRequestIsValid() {
-        SendMessageRequest request = new SendMessageRequest("recipient-123", new byte[] { 1, 2, 3 });
+        SendMessageRequest request = new SendMessageRequest("HNET-RCPT123", new byte[] { 1, 2, 3 });
         Set<ConstraintViolation<SendMessageRequest>> violations = validator.validate(request);
         assertTrue(violations.isEmpty(), "Valid request should not have violations");
     }
@@ -45,9 +45,17 @@ class SendMessageRequestTest {
         assertTrue(violations.stream().anyMatch(v -> v.getMessage().contains("Recipient ID is required")));
     }
 
+    @Test
+    void shouldFailValidation_WhenRecipientIdIsMalformed() {
+        SendMessageRequest request = new SendMessageRequest("HNET-ALICE 1 HNET-BOBBY", new byte[] { 1, 2, 3 });
+        Set<ConstraintViolation<SendMessageRequest>> violations = validator.validate(request);
+        assertFalse(violations.isEmpty(), "Malformed recipient ID should fail validation");
+        assertTrue(violations.stream().anyMatch(v -> v.getMessage().contains("Recipient ID is invalid")));
+    }
+
     @Test
     void shouldFailValidation_WhenStegoImageIsNull() {
-        SendMessageRequest request = new SendMessageRequest("recipient-123", null);
+        SendMessageRequest request = new SendMessageRequest("HNET-RCPT123", null);
         Set<ConstraintViolation<SendMessageRequest>> violations = validator.validate(request);
         assertFalse(violations.isEmpty(), "Null stego image should fail validation");
         assertTrue(violations.stream().anyMatch(v -> v.getMessage().contains("Stego image is required")));
@@ -55,7 +63,7 @@ class SendMessageRequestTest {
 
     @Test
     void shouldFailValidation_WhenStegoImageIsEmpty() {
-        SendMessageRequest request = new SendMessageRequest("recipient-123", new byte[] {});
+        SendMessageRequest request = new SendMessageRequest("HNET-RCPT123", new byte[] {});
         Set<ConstraintViolation<SendMessageRequest>> violations = validator.validate(request);
         assertFalse(violations.isEmpty(), "Empty stego image should fail validation");
         assertTrue(violations.stream().anyMatch(v -> v.getMessage().contains("Stego image cannot be empty")));
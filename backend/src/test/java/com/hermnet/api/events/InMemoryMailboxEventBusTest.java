@@ -0,0 +1,75 @@
+package com.hermnet.api.events;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InMemoryMailboxEventBus.
+ *
+ * Verifies that events published inside a transaction are only delivered once
+ * it commits.
+ */
+public class InMemoryMailboxEventBusTest {
+
+    private static final MailboxEvent EVENT = MailboxEvent.stored("HNET-TEST-RECIPIENT-HASH", 7L, 512L);
+
+    private final InMemoryMailboxEventBus eventBus = new InMemoryMailboxEventBus();
+    private final List<MailboxEvent> delivered = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testPublish_WithoutTransaction_ShouldDeliverImmediately() {
+        // Given
+        eventBus.subscribe(delivered::add);
+
+        // When
+        eventBus.publish(EVENT);
+
+        // Then
+        assertEquals(List.of(EVENT), delivered);
+    }
+
+    @Test
+    public void testPublish_InTransaction_ShouldDeliverAfterCommit() {
+        // Given
+        eventBus.subscribe(delivered::add);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        eventBus.publish(EVENT);
+
+        // Then
+        assertTrue(delivered.isEmpty(), "Nothing should be delivered before the commit");
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        assertEquals(List.of(EVENT), delivered);
+    }
+
+    @Test
+    public void testPublish_InRolledBackTransaction_ShouldNotDeliver() {
+        // Given
+        eventBus.subscribe(delivered::add);
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        eventBus.publish(EVENT);
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Then
+        assertTrue(delivered.isEmpty());
+    }
+}
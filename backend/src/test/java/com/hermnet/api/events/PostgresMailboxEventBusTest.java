@@ -0,0 +1,145 @@
+package com.hermnet.api.events;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PostgresMailboxEventBus.
+ *
+ * Verifies the notification payload format, that client-supplied recipient
+ * hashes cannot inject events, that the events of a transaction are sent
+ * together just before it commits, and that reconnect listeners are told when
+ * the listening connection is re-established.
+ */
+public class PostgresMailboxEventBusTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PostgresMailboxEventBus eventBus = new PostgresMailboxEventBus(dataSource, jdbcTemplate);
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(eventBus);
+    }
+
+    @Test
+    public void testEncode_ShouldRoundTripAndRespectPayloadLimit() {
+        // Given
+        List<MailboxEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            events.add(MailboxEvent.stored(String.format("%064d", i), i, 512L));
+        }
+
+        // When
+        List<String> payloads = PostgresMailboxEventBus.encode(events);
+
+        // Then
+        assertTrue(payloads.size() > 1, "Events should be split across payloads");
+        List<MailboxEvent> decoded = new ArrayList<>();
+        for (String payload : payloads) {
+            assertTrue(payload.length() <= PostgresMailboxEventBus.MAX_PAYLOAD_BYTES);
+            decoded.addAll(PostgresMailboxEventBus.decode(payload));
+        }
+        assertEquals(events, decoded);
+    }
+
+    @Test
+    public void testEncode_ShouldKeepDelimitersInRecipientHashInsideTheEvent() {
+        // Given
+        MailboxEvent forged = MailboxEvent.stored("HNET-A 1 2 1\nACKNOWLEDGED HNET-VICTIM 0 0 999999", 1L, 2L);
+
+        // When
+        List<String> payloads = PostgresMailboxEventBus.encode(List.of(forged));
+        List<MailboxEvent> decoded = PostgresMailboxEventBus.decode(payloads.get(0));
+
+        // Then
+        assertEquals(List.of(forged), decoded);
+    }
+
+    @Test
+    public void testDecode_ShouldDropPayloadThatDoesNotParse() {
+        assertEquals(List.of(), PostgresMailboxEventBus.decode("STORED HNET-A 1 2 1\nACKNOWLEDGED HNET-C 0 0 3"));
+        assertEquals(List.of(), PostgresMailboxEventBus.decode(
+                "[{\"type\":\"STORED\",\"recipientHash\":\"HNET-A\",\"messageId\":1,\"size\":2,\"count\":1},"
+                        + "{\"type\":\"ACKNOWLEDGED\",\"messageId\":0,\"size\":0,\"count\":3}]"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPublish_InTransaction_ShouldSendOneNotificationBeforeCommit() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        eventBus.publish(MailboxEvent.stored("HNET-A", 1L, 2L));
+        eventBus.publish(MailboxEvent.acknowledged("HNET-B", 2));
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        verify(jdbcTemplate).query(anyString(), any(ResultSetExtractor.class),
+                eq(PostgresMailboxEventBus.CHANNEL),
+                eq("[{\"type\":\"STORED\",\"recipientHash\":\"HNET-A\",\"messageId\":1,\"size\":2,\"count\":1},"
+                        + "{\"type\":\"ACKNOWLEDGED\",\"recipientHash\":\"HNET-B\",\"messageId\":0,\"size\":0,\"count\":2}]"));
+
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+                TransactionSynchronization.STATUS_COMMITTED);
+        assertNull(TransactionSynchronizationManager.getResource(eventBus), "Batch should be released");
+    }
+
+    @Test
+    public void testListen_ShouldNotifyReconnectListenersOnlyAfterFailure() throws Exception {
+        // Given - the first connection fails once polling, the second one stays up
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getNotifications(anyInt()))
+                .thenThrow(new SQLException("connection lost"))
+                .thenReturn(null);
+        ReflectionTestUtils.setField(eventBus, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(eventBus, "retryDelay", Duration.ZERO);
+        AtomicInteger reconnects = new AtomicInteger();
+        eventBus.onReconnect(reconnects::incrementAndGet);
+
+        // When
+        eventBus.start();
+        try {
+            verify(dataSource, timeout(5000).times(2)).getConnection();
+            verify(pgConnection, timeout(5000).atLeast(2)).getNotifications(anyInt());
+        } finally {
+            eventBus.stop();
+        }
+
+        // Then
+        assertEquals(1, reconnects.get());
+    }
+}
@@ -9,7 +9,7 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * Verifies builder functionality, lifecycle callbacks, and edge cases.
  * Updated to match the current entity structure (messageId, recipientHash,
- * stegoPacket).
+ * stegoPacket, packetRef, packetSize).
  */
 public class MessageTest {
 
@@ -65,12 +65,16 @@ public class MessageTest {
         LocalDateTime now = LocalDateTime.now();
 
         // When
-        Message msg = new Message(id, recipientHash, stegoPacket, now);
+        Message msg = new Message(id, recipientHash, stegoPacket, null, 3L, null, null, now);
 
         // Then
         assertEquals(id, msg.getMessageId());
         assertEquals(recipientHash, msg.getRecipientHash());
         assertArrayEquals(stegoPacket, msg.getStegoPacket());
+        assertNull(msg.getPacketRef());
+        assertEquals(3L, msg.getPacketSize());
+        assertNull(msg.getSharedPacketId());
+        assertNull(msg.getLeasedUntil());
         assertEquals(now, msg.getCreatedAt());
     }
 
@@ -0,0 +1,170 @@
+package com.hermnet.api.relay;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.AcknowledgedPacket;
+import com.hermnet.api.repository.MailboxCount;
+import com.hermnet.api.repository.MessageSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InMemoryMessageRepository.
+ *
+ * Verifies ID assignment and the per-recipient index behind mailbox listing
+ * and keyset pagination, leasing and acknowledgement.
+ */
+public class InMemoryMessageRepositoryTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    private final InMemoryMessageRepository messageRepository = new InMemoryMessageRepository();
+
+    @Test
+    public void testSave_ShouldAssignIdAndTimestamp() {
+        // When
+        Message message = messageRepository.save(Message.builder().recipientHash(RECIPIENT_HASH).build());
+
+        // Then
+        assertEquals(1L, message.getMessageId());
+        assertNotNull(message.getCreatedAt());
+    }
+
+    @Test
+    public void testStreamPage_ShouldReturnMessagesAfterCursorOldestFirst() {
+        // Given
+        save(RECIPIENT_HASH);
+        save("HNET-OTHER-RECIPIENT");
+        save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+
+        // When
+        List<Long> page = messageRepository
+                .streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 1L, Limit.of(2))
+                .map(Message::getMessageId)
+                .toList();
+
+        // Then
+        assertEquals(List.of(3L, 4L), page);
+    }
+
+    @Test
+    public void testFindSummaries_ShouldProjectRecipientMessagesOnly() {
+        // Given
+        save(RECIPIENT_HASH).setPacketSize(10L);
+        save("HNET-OTHER-RECIPIENT");
+        save(RECIPIENT_HASH);
+
+        // When
+        List<MessageSummary> page = messageRepository
+                .findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 0L, Limit.of(5));
+
+        // Then
+        assertEquals(List.of(1L, 3L), page.stream().map(MessageSummary::getMessageId).toList());
+        assertEquals(10L, page.get(0).getPacketSize());
+        assertTrue(messageRepository.findByMessageIdAndRecipientHash(1L, RECIPIENT_HASH).isPresent());
+        assertTrue(messageRepository.findByMessageIdAndRecipientHash(2L, RECIPIENT_HASH).isEmpty());
+    }
+
+    @Test
+    public void testCountByRecipient_ShouldCountNonEmptyMailboxes() {
+        // Given
+        save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+        Message other = save("HNET-OTHER-RECIPIENT");
+        messageRepository.delete(other);
+
+        // When
+        List<MailboxCount> counts = messageRepository.countByRecipient();
+
+        // Then
+        assertEquals(1, counts.size());
+        assertEquals(RECIPIENT_HASH, counts.get(0).getRecipientHash());
+        assertEquals(2L, counts.get(0).getMessageCount());
+    }
+
+    @Test
+    public void testDelete_ShouldRemoveMessageFromMailbox() {
+        // Given
+        Message message = save(RECIPIENT_HASH);
+
+        // When
+        messageRepository.delete(message);
+
+        // Then
+        assertTrue(messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH).isEmpty());
+    }
+
+    @Test
+    public void testDeleteAcknowledged_ShouldRemoveMessagesUpToHighWaterMarkOnce() {
+        // Given
+        save(RECIPIENT_HASH).setPacketRef("a");
+        save("HNET-OTHER-RECIPIENT");
+        save(RECIPIENT_HASH).setPacketRef("b");
+        save(RECIPIENT_HASH);
+
+        // When
+        List<AcknowledgedPacket> packets = messageRepository.deleteAcknowledged(RECIPIENT_HASH, 3L);
+        List<AcknowledgedPacket> again = messageRepository.deleteAcknowledged(RECIPIENT_HASH, List.of(1L, 3L));
+
+        // Then
+        assertEquals(List.of(new AcknowledgedPacket("a", 0), new AcknowledgedPacket("b", 0)), packets);
+        assertTrue(again.isEmpty(), "Acknowledged packets should not be released twice");
+        assertEquals(1, messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH).size());
+        assertEquals(2, messageRepository.count());
+    }
+
+    @Test
+    public void testShareWith_ShouldReleasePacketWithLastReference() {
+        // Given
+        Message original = save(RECIPIENT_HASH);
+        original.setPacketRef("shared");
+        original.setPacketSize(10L);
+
+        // When
+        List<Long> copies = messageRepository.shareWith(original.getMessageId(),
+                List.of("HNET-OTHER-RECIPIENT", "HNET-THIRD-RECIPIENT"));
+        List<AcknowledgedPacket> first = messageRepository.deleteAcknowledged(RECIPIENT_HASH, Long.MAX_VALUE);
+        List<AcknowledgedPacket> second = messageRepository.deleteAcknowledged("HNET-OTHER-RECIPIENT",
+                Long.MAX_VALUE);
+        List<AcknowledgedPacket> last = messageRepository.deleteAcknowledged("HNET-THIRD-RECIPIENT",
+                Long.MAX_VALUE);
+
+        // Then
+        assertEquals(2, copies.size());
+        assertEquals(List.of(new AcknowledgedPacket(null, 10)), first, "A shared packet should be kept");
+        assertEquals(List.of(new AcknowledgedPacket(null, 10)), second);
+        assertEquals(List.of(new AcknowledgedPacket("shared", 10)), last,
+                "The last acknowledgement should release the packet");
+    }
+
+    @Test
+    public void testLease_ShouldSkipUnexpiredLeases() {
+        // Given
+        save(RECIPIENT_HASH);
+        save("HNET-OTHER-RECIPIENT");
+        save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+        LocalDateTime now = LocalDateTime.now();
+
+        // When
+        List<Long> first = messageRepository.lease(RECIPIENT_HASH, 2, now, now.plusMinutes(1));
+        List<Long> second = messageRepository.lease(RECIPIENT_HASH, 2, now, now.plusMinutes(1));
+        List<Long> afterExpiry = messageRepository.lease(RECIPIENT_HASH, 5, now.plusMinutes(1),
+                now.plusMinutes(2));
+
+        // Then
+        assertEquals(List.of(1L, 3L), first);
+        assertEquals(List.of(4L), second, "Leased messages should be skipped");
+        assertEquals(List.of(1L, 3L, 4L), afterExpiry, "Expired leases should be visible again");
+    }
+
+    private Message save(String recipientHash) {
+        return messageRepository.save(Message.builder().recipientHash(recipientHash).build());
+    }
+}
@@ -0,0 +1,66 @@
+package com.hermnet.api.relay;
+
+import com.google.firebase.FirebaseApp;
+import com.hermnet.api.repository.MessageRepository;
+import com.hermnet.api.service.MailboxService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration test for the relay profile.
+ *
+ * Boots the application without a database and checks that mailbox
+ * operations run against the in-memory repositories.
+ */
+@SpringBootTest
+@ActiveProfiles("relay")
+public class RelayProfileTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @MockBean(name = "firebaseApp")
+    private FirebaseApp firebaseApp;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MailboxService mailboxService;
+
+    @DynamicPropertySource
+    static void relayProperties(DynamicPropertyRegistry registry) {
+        registry.add("hermnet.relay.snapshot.file", () -> tempDir.resolve("relay.snapshot").toString());
+    }
+
+    @Test
+    public void testRelayProfile_ShouldStoreAndReadPacketsInMemory() throws Exception {
+        // When
+        mailboxService.storePacket("HNET-RELAY-RECIPIENT", new ByteArrayInputStream(new byte[] { 1, 2 }), 2);
+
+        // Then
+        assertInstanceOf(InMemoryMessageRepository.class, AopTestUtils.getUltimateTargetObject(messageRepository));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mailboxService.streamMailbox("HNET-RELAY-RECIPIENT", 0L, null, out);
+        DataInputStream frames = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        frames.readLong();
+        assertEquals(2, frames.readInt());
+        assertArrayEquals(new byte[] { 1, 2 }, frames.readNBytes(2));
+        assertEquals(-1, frames.read());
+    }
+}
@@ -0,0 +1,117 @@
+package com.hermnet.api.relay;
+
+import com.hermnet.api.model.AuthChallenge;
+import com.hermnet.api.model.MailboxSummary;
+import com.hermnet.api.model.Message;
+import com.hermnet.api.model.User;
+import com.hermnet.api.storage.OffHeapPacketStore;
+import com.hermnet.api.storage.PacketBufferPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RelaySnapshotService.
+ *
+ * Verifies that users, challenges and messages with their packets survive a
+ * snapshot and restore cycle, and that new IDs do not collide with restored
+ * ones.
+ */
+public class RelaySnapshotServiceTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @TempDir
+    Path tempDir;
+
+    private InMemoryUserRepository userRepository;
+    private InMemoryAuthChallengeRepository authChallengeRepository;
+    private InMemoryMessageRepository messageRepository;
+    private InMemoryMailboxSummaryRepository summaryRepository;
+    private OffHeapPacketStore packetStore;
+    private RelaySnapshotService snapshotService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        snapshotService = newService();
+    }
+
+    @Test
+    public void testSnapshot_ShouldRestoreUsersChallengesAndMessages() throws Exception {
+        // Given
+        User user = userRepository.save(User.builder().idHash(RECIPIENT_HASH).publicKey("PUBLIC-KEY").build());
+        authChallengeRepository.save(AuthChallenge.builder()
+                .nonce("NONCE")
+                .userHash(user)
+                .expiresAt(LocalDateTime.now().plusMinutes(5))
+                .build());
+        long first = packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+        long second = packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 4 }));
+
+        // When
+        snapshotService.snapshot();
+        snapshotService = newService();
+
+        // Then
+        assertEquals("PUBLIC-KEY", userRepository.findById(RECIPIENT_HASH).orElseThrow().getPublicKey());
+        assertEquals(RECIPIENT_HASH,
+                authChallengeRepository.findByNonce("NONCE").orElseThrow().getUserHash().getIdHash());
+
+        List<Message> mailbox = messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH);
+        assertEquals(List.of(second, first), mailbox.stream().map(Message::getMessageId).toList());
+        assertArrayEquals(new byte[] { 4 }, read(mailbox.get(0)));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read(mailbox.get(1)));
+
+        MailboxSummary summary = summaryRepository.findById(RECIPIENT_HASH).orElseThrow();
+        assertEquals(2, summary.getMessageCount(), "Summaries should be rebuilt from the restored messages");
+        assertEquals(4, summary.getTotalBytes());
+        assertEquals(mailbox.get(1).getCreatedAt(), summary.getOldestCreatedAt());
+
+        long next = packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 5 }));
+        assertTrue(next > second, "New messages should not reuse restored IDs");
+    }
+
+    @Test
+    public void testSnapshot_ShouldReplaceFileAtomically() throws Exception {
+        // When
+        snapshotService.snapshot();
+
+        // Then
+        assertTrue(Files.exists(tempDir.resolve("relay.snapshot")));
+        assertFalse(Files.exists(tempDir.resolve("relay.snapshot.tmp")), "Temporary file should be renamed");
+    }
+
+    private RelaySnapshotService newService() throws Exception {
+        userRepository = new InMemoryUserRepository();
+        authChallengeRepository = new InMemoryAuthChallengeRepository();
+        messageRepository = new InMemoryMessageRepository();
+        summaryRepository = new InMemoryMailboxSummaryRepository(messageRepository);
+
+        packetStore = new OffHeapPacketStore(messageRepository,
+                new PacketBufferPool(1, 16, Duration.ofSeconds(5)));
+
+        RelaySnapshotService service = new RelaySnapshotService(userRepository, authChallengeRepository,
+                new InMemoryRateLimitBucketRepository(), new InMemoryBlacklistedTokenRepository(),
+                messageRepository, summaryRepository, packetStore);
+        ReflectionTestUtils.setField(service, "file", tempDir.resolve("relay.snapshot").toString());
+        service.restore();
+        return service;
+    }
+
+    private byte[] read(Message message) throws Exception {
+        try (InputStream in = packetStore.open(message)) {
+            return in.readAllBytes();
+        }
+    }
+}
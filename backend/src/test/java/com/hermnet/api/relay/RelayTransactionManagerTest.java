@@ -0,0 +1,64 @@
+package com.hermnet.api.relay;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.storage.OffHeapPacketStore;
+import com.hermnet.api.storage.PacketBufferPool;
+import com.hermnet.api.storage.PacketUpload;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RelayTransactionManager.
+ *
+ * Verifies that a rolled back transaction leaves neither mailbox entries nor
+ * packets behind in the in-memory relay, and that a committed one keeps both.
+ */
+public class RelayTransactionManagerTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    private final InMemoryMessageRepository messageRepository = new InMemoryMessageRepository();
+    private final OffHeapPacketStore packetStore = new OffHeapPacketStore(messageRepository,
+            new PacketBufferPool(1, 4, Duration.ofSeconds(5)));
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new RelayTransactionManager());
+
+    @Test
+    public void testRollback_ShouldRemoveMessagesAndPacketsOfFailedBatch() {
+        // Given - the third packet does not fit in a staging buffer
+        List<PacketUpload> uploads = List.of(
+                new PacketUpload(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 1 })),
+                new PacketUpload(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 2 })),
+                new PacketUpload(RECIPIENT_HASH, new ByteArrayInputStream(new byte[5])));
+
+        // When
+        assertThrows(UncheckedIOException.class,
+                () -> transactionTemplate.executeWithoutResult(status -> packetStore.storeAll(uploads)));
+
+        // Then
+        assertEquals(0, messageRepository.count());
+        assertTrue(messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH).isEmpty());
+        assertThrows(IOException.class, () -> packetStore.open(Message.builder().packetRef("1").build()),
+                "Packets of the failed batch should be released");
+    }
+
+    @Test
+    public void testCommit_ShouldKeepMessagesAndPackets() throws Exception {
+        // When
+        List<Long> ids = transactionTemplate.execute(status -> packetStore.storeAll(List.of(
+                new PacketUpload(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 1 })),
+                new PacketUpload(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 2 })))));
+
+        // Then
+        assertEquals(2, messageRepository.count());
+        Message second = messageRepository.findById(ids.get(1)).orElseThrow();
+        assertArrayEquals(new byte[] { 2 }, packetStore.open(second).readAllBytes());
+    }
+}
@@ -0,0 +1,78 @@
+package com.hermnet.api.repository;
+
+import com.hermnet.api.model.MailboxSummary;
+import com.hermnet.api.model.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for MailboxSummaryRepository.
+ * 
+ * Verifies that the incremental updates add up stored packets and read the
+ * oldest arrival back from the mailbox after a removal.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class MailboxSummaryRepositoryTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @Autowired
+    private MailboxSummaryRepository summaryRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        summaryRepository.deleteAll();
+        messageRepository.deleteAll();
+    }
+
+    @Test
+    public void testRecordStored_ShouldAccumulateCountBytesAndOldest() {
+        // Given
+        LocalDateTime first = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        // When
+        summaryRepository.recordStored(RECIPIENT_HASH, 100, first);
+        summaryRepository.recordStored(RECIPIENT_HASH, 50, first.plusMinutes(1));
+        entityManager.clear();
+
+        // Then
+        MailboxSummary summary = summaryRepository.findById(RECIPIENT_HASH).orElseThrow();
+        assertEquals(2, summary.getMessageCount());
+        assertEquals(150, summary.getTotalBytes());
+        assertEquals(first, summary.getOldestCreatedAt());
+    }
+
+    @Test
+    public void testRecordRemoved_ShouldSubtractAndReadOldestRemainingMessage() {
+        // Given
+        Message remaining = messageRepository.saveAndFlush(Message.builder().recipientHash(RECIPIENT_HASH).build());
+        summaryRepository.recordStored(RECIPIENT_HASH, 100, remaining.getCreatedAt().minusMinutes(1));
+        summaryRepository.recordStored(RECIPIENT_HASH, 50, remaining.getCreatedAt());
+
+        // When
+        summaryRepository.recordRemoved(RECIPIENT_HASH, 1, 100);
+        entityManager.clear();
+
+        // Then
+        MailboxSummary summary = summaryRepository.findById(RECIPIENT_HASH).orElseThrow();
+        assertEquals(1, summary.getMessageCount());
+        assertEquals(50, summary.getTotalBytes());
+        assertEquals(remaining.getCreatedAt().truncatedTo(ChronoUnit.MICROS), summary.getOldestCreatedAt());
+    }
+}
@@ -6,9 +6,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 
+import java.io.ByteArrayInputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -118,6 +121,172 @@ public class MessageRepositoryTest {
         assertArrayEquals(oldMsg.getStegoPacket(), found.get(1).getStegoPacket(), "Older message should be second");
     }
 
+    @Test
+    public void testStreamPageAfterCursor_ShouldReturnLimitedMessagesOldestFirst() {
+        // Given
+        Message first = save(RECIPIENT_HASH);
+        Message second = save(RECIPIENT_HASH);
+        save("OTHER-USER-HASH");
+        Message third = save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+
+        // When
+        List<Message> page;
+        try (Stream<Message> stream = messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(
+                RECIPIENT_HASH, first.getMessageId(), Limit.of(2))) {
+            page = stream.toList();
+        }
+
+        // Then
+        assertEquals(2, page.size(), "Page should be capped at the limit");
+        assertEquals(second.getMessageId(), page.get(0).getMessageId(), "Page should start after the cursor");
+        assertEquals(third.getMessageId(), page.get(1).getMessageId());
+    }
+
+    @Test
+    public void testFindSummaries_ShouldListRecipientMessagesWithoutPackets() {
+        // Given
+        Message first = save(RECIPIENT_HASH);
+        save("OTHER-USER-HASH");
+        Message second = save(RECIPIENT_HASH);
+
+        // When
+        List<MessageSummary> page = messageRepository.findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(
+                RECIPIENT_HASH, 0L, Limit.of(10));
+
+        // Then
+        assertEquals(2, page.size());
+        assertEquals(first.getMessageId(), page.get(0).getMessageId());
+        assertEquals(second.getMessageId(), page.get(1).getMessageId());
+        assertTrue(messageRepository.findByMessageIdAndRecipientHash(first.getMessageId(), "OTHER-USER-HASH")
+                .isEmpty(), "Messages should only be found in their own mailbox");
+    }
+
+    @Test
+    public void testDeleteAcknowledged_ShouldDeleteOnlyRecipientMessagesUpToHighWaterMark() {
+        // Given
+        save(RECIPIENT_HASH);
+        save("OTHER-USER-HASH");
+        Message second = save(RECIPIENT_HASH);
+        Message third = save(RECIPIENT_HASH);
+
+        // When
+        List<AcknowledgedPacket> packets = messageRepository.deleteAcknowledged(RECIPIENT_HASH, second.getMessageId());
+
+        // Then
+        assertEquals(2, packets.size(), "Both acknowledged messages should be deleted");
+        List<Message> remaining = messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH);
+        assertEquals(1, remaining.size());
+        assertEquals(third.getMessageId(), remaining.get(0).getMessageId());
+        assertEquals(1, messageRepository.findByRecipientHashOrderByCreatedAtDesc("OTHER-USER-HASH").size(),
+                "Other mailboxes should be untouched");
+    }
+
+    @Test
+    public void testDeleteAcknowledged_ByIds_ShouldIgnoreOtherRecipients() {
+        // Given
+        Message mine = save(RECIPIENT_HASH);
+        Message other = save("OTHER-USER-HASH");
+
+        // When
+        List<AcknowledgedPacket> packets = messageRepository.deleteAcknowledged(RECIPIENT_HASH,
+                List.of(mine.getMessageId(), other.getMessageId()));
+
+        // Then
+        assertEquals(1, packets.size());
+        assertTrue(messageRepository.findByRecipientHashOrderByCreatedAtDesc(RECIPIENT_HASH).isEmpty());
+        assertEquals(1, messageRepository.findByRecipientHashOrderByCreatedAtDesc("OTHER-USER-HASH").size());
+    }
+
+    @Test
+    public void testLease_ShouldSkipLeasedMessagesUntilExpiry() {
+        // Given
+        Message first = save(RECIPIENT_HASH);
+        save("OTHER-USER-HASH");
+        Message second = save(RECIPIENT_HASH);
+        LocalDateTime now = LocalDateTime.now();
+
+        // When
+        List<Long> leased = messageRepository.lease(RECIPIENT_HASH, 1, now, now.plusMinutes(1));
+        List<Long> next = messageRepository.lease(RECIPIENT_HASH, 5, now, now.plusMinutes(1));
+        List<Long> afterExpiry = messageRepository.lease(RECIPIENT_HASH, 5, now.plusMinutes(1),
+                now.plusMinutes(2));
+
+        // Then
+        assertEquals(List.of(first.getMessageId()), leased);
+        assertEquals(List.of(second.getMessageId()), next, "Leased messages should be skipped");
+        assertEquals(List.of(first.getMessageId(), second.getMessageId()), afterExpiry,
+                "Expired leases should be visible again");
+    }
+
+    @Test
+    public void testInsertStreamingBatch_ShouldReturnIdsInOrder() {
+        // When
+        List<Long> ids = messageRepository.insertStreaming(List.of(RECIPIENT_HASH, "OTHER-USER-HASH"),
+                List.of(new ByteArrayInputStream(STEGO_DATA), new ByteArrayInputStream(new byte[] { 9 })));
+
+        // Then
+        assertEquals(2, ids.size());
+        assertEquals(RECIPIENT_HASH, messageRepository.findById(ids.get(0)).orElseThrow().getRecipientHash());
+        assertEquals(1L, messageRepository.findById(ids.get(1)).orElseThrow().getPacketSize());
+    }
+
+    @Test
+    public void testShareWith_ShouldReleasePacketWithLastReference() {
+        // Given
+        Message original = messageRepository.save(Message.builder()
+                .recipientHash(RECIPIENT_HASH)
+                .packetRef("shared")
+                .packetSize(5L)
+                .build());
+
+        // When
+        List<Long> copies = messageRepository.shareWith(original.getMessageId(), List.of("OTHER-USER-HASH"));
+        List<AcknowledgedPacket> first = messageRepository.deleteAcknowledged(RECIPIENT_HASH, Long.MAX_VALUE);
+        List<AcknowledgedPacket> last = messageRepository.deleteAcknowledged("OTHER-USER-HASH", Long.MAX_VALUE);
+
+        // Then
+        assertEquals(1, copies.size());
+        assertEquals(List.of(new AcknowledgedPacket(null, 5)), first, "A shared packet should be kept");
+        assertEquals(List.of(new AcknowledgedPacket("shared", 5)), last,
+                "The last acknowledgement should release the packet");
+    }
+
+    @Test
+    public void testCountByRecipient_ShouldAggregatePerMailbox() {
+        // Given
+        save(RECIPIENT_HASH);
+        save(RECIPIENT_HASH);
+        save("OTHER-USER-HASH");
+
+        // When
+        List<MailboxCount> counts = messageRepository.countByRecipient();
+
+        // Then
+        assertEquals(2, counts.size());
+        assertTrue(counts.stream()
+                .anyMatch(c -> c.getRecipientHash().equals(RECIPIENT_HASH) && c.getMessageCount() == 2));
+        assertTrue(counts.stream()
+                .anyMatch(c -> c.getRecipientHash().equals("OTHER-USER-HASH") && c.getMessageCount() == 1));
+    }
+
+    @Test
+    public void testFindDistinctPacketRefs() {
+        // Given
+        save(RECIPIENT_HASH).setPacketRef("3");
+        save("OTHER-USER-HASH").setPacketRef("3");
+        save(RECIPIENT_HASH).setPacketRef("5");
+        save(RECIPIENT_HASH);
+        messageRepository.flush();
+
+        // When
+        List<String> refs = messageRepository.findDistinctPacketRefs();
+
+        // Then
+        assertEquals(2, refs.size());
+        assertTrue(refs.containsAll(List.of("3", "5")));
+    }
+
     @Test
     public void testDeleteByCreatedAtBefore() {
         // Given
@@ -136,4 +305,11 @@ public class MessageRepositoryTest {
         List<Message> remaining = messageRepository.findAll();
         assertTrue(remaining.isEmpty(), "Message should be deleted");
     }
+
+    private Message save(String recipientHash) {
+        return messageRepository.save(Message.builder()
+                .recipientHash(recipientHash)
+                .stegoPacket(STEGO_DATA)
+                .build());
+    }
 }
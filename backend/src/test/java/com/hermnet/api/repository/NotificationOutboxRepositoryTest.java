@@ -0,0 +1,133 @@
+package com.hermnet.api.repository;
+
+import com.hermnet.api.model.NotificationOutbox;
+import com.hermnet.api.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for NotificationOutboxRepository.
+ * 
+ * Verifies that pending notifications are coalesced per recipient and only
+ * recorded for recipients with a push token, that claiming reschedules them
+ * with a backoff, and that acknowledging keeps entries bumped by a newer
+ * packet.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class NotificationOutboxRepositoryTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+    private static final Duration BACKOFF = Duration.ofSeconds(10);
+
+    @Autowired
+    private NotificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        outboxRepository.deleteAll();
+        userRepository.deleteAll();
+        userRepository.save(User.builder().idHash(RECIPIENT_HASH).publicKey("key-1").pushToken("token-1").build());
+        userRepository.save(User.builder().idHash("HNET-OTHER").publicKey("key-2").pushToken("token-2").build());
+        userRepository.flush();
+    }
+
+    @Test
+    public void testRecordPending_ShouldKeepOneEntryPerRecipient() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+
+        // When
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+        entityManager.clear();
+
+        // Then
+        assertEquals(1, outboxRepository.count());
+        assertEquals(1, outboxRepository.findById(RECIPIENT_HASH).orElseThrow().getGeneration());
+    }
+
+    @Test
+    public void testRecordPending_WithoutPushToken_ShouldSkipRecipient() {
+        // Given
+        userRepository.saveAndFlush(User.builder().idHash("HNET-NO-TOKEN").publicKey("key-3").build());
+
+        // When
+        outboxRepository.recordPending("HNET-NO-TOKEN", LocalDateTime.now());
+        outboxRepository.recordPending("HNET-UNKNOWN", LocalDateTime.now());
+
+        // Then
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    public void testClaimDue_ShouldCountAttemptAndRescheduleWithBackoff() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+
+        // When
+        List<ClaimedNotification> claimed = outboxRepository.claimDue(now, 10, BACKOFF, Duration.ofMinutes(1));
+        List<ClaimedNotification> claimedAgain = outboxRepository.claimDue(now, 10, BACKOFF, Duration.ofMinutes(1));
+        entityManager.clear();
+
+        // Then
+        assertEquals(List.of(new ClaimedNotification(RECIPIENT_HASH, 0, 1)), claimed);
+        assertTrue(claimedAgain.isEmpty(), "A claimed entry should not be due before its backoff");
+        NotificationOutbox entry = outboxRepository.findById(RECIPIENT_HASH).orElseThrow();
+        assertFalse(entry.getNextAttemptAt().isBefore(now.plus(BACKOFF.dividedBy(2))));
+        assertFalse(entry.getNextAttemptAt().isAfter(now.plus(BACKOFF)));
+    }
+
+    @Test
+    public void testAcknowledge_ShouldKeepEntryBumpedSinceClaim() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+        outboxRepository.recordPending("HNET-OTHER", now);
+        List<ClaimedNotification> claimed = outboxRepository.claimDue(now, 10, BACKOFF, Duration.ofMinutes(1));
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+
+        // When
+        outboxRepository.acknowledge(claimed);
+        entityManager.clear();
+
+        // Then
+        assertFalse(outboxRepository.existsById("HNET-OTHER"));
+        NotificationOutbox bumped = outboxRepository.findById(RECIPIENT_HASH).orElseThrow();
+        assertEquals(0, bumped.getAttempts());
+    }
+
+    @Test
+    public void testDeleteExhausted_ShouldRemoveDueEntriesOutOfAttempts() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.recordPending(RECIPIENT_HASH, now);
+        outboxRepository.claimDue(now, 10, BACKOFF, Duration.ofMinutes(1));
+
+        // When
+        int notYetDue = outboxRepository.deleteExhausted(1, now);
+        int deleted = outboxRepository.deleteExhausted(1, now.plusMinutes(1));
+
+        // Then
+        assertEquals(0, notYetDue);
+        assertEquals(1, deleted);
+        assertEquals(0, outboxRepository.count());
+    }
+}
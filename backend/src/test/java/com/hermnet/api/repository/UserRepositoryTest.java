@@ -6,8 +6,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,6 +30,9 @@ public class UserRepositoryTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @BeforeEach
     public void setUp() {
         // Clean up database before each test to ensure isolation
@@ -230,6 +235,23 @@ public class UserRepositoryTest {
         assertEquals("second-key", found.getPublicKey(), "Public key should be updated");
     }
 
+    @Test
+    public void testClearPushTokens_ShouldRemoveOnlyGivenTokens() {
+        // Given
+        userRepository.save(User.builder().idHash("HNET-DEAD").publicKey("dead-key").pushToken("dead-token").build());
+        userRepository.save(User.builder().idHash("HNET-LIVE").publicKey("live-key").pushToken("live-token").build());
+        userRepository.flush();
+
+        // When
+        int cleared = userRepository.clearPushTokens(List.of("dead-token", "unknown-token"));
+        entityManager.clear();
+
+        // Then
+        assertEquals(1, cleared);
+        assertNull(userRepository.findById("HNET-DEAD").orElseThrow().getPushToken());
+        assertEquals("live-token", userRepository.findById("HNET-LIVE").orElseThrow().getPushToken());
+    }
+
     // ==================== DELETE TESTS ====================
 
     @Test
@@ -0,0 +1,85 @@
+package com.hermnet.api.service;
+
+import com.hermnet.api.dto.NewMessageEvent;
+import com.hermnet.api.events.MailboxEvent;
+import com.hermnet.api.events.MailboxEventBus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for MailboxEventDispatcher.
+ *
+ * Verifies that every mailbox change bumps the version and pending count,
+ * that only new packets wake waiting clients, and that a reconnect of the bus
+ * invalidates the issued entity tags and the pending index.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MailboxEventDispatcherTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @Mock
+    private MailboxEventBus eventBus;
+
+    @Mock
+    private MailboxWatchRegistry watchRegistry;
+
+    @Mock
+    private LiveDeliveryRegistry liveDelivery;
+
+    @Mock
+    private MailboxVersions versions;
+
+    @Mock
+    private PendingMailboxIndex pendingIndex;
+
+    @InjectMocks
+    private MailboxEventDispatcher dispatcher;
+
+    @Test
+    public void testDispatch_Stored_ShouldBumpVersionAndWakeClients() {
+        // When
+        dispatcher.dispatch(MailboxEvent.stored(RECIPIENT_HASH, 7L, 512L));
+
+        // Then
+        verify(versions).bump(RECIPIENT_HASH);
+        verify(pendingIndex).add(RECIPIENT_HASH, 1);
+        verify(watchRegistry).signal(RECIPIENT_HASH);
+        verify(liveDelivery).publish(RECIPIENT_HASH, new NewMessageEvent(7L, 512L));
+    }
+
+    @Test
+    public void testDispatch_Acknowledged_ShouldOnlyBumpVersion() {
+        // When
+        dispatcher.dispatch(MailboxEvent.acknowledged(RECIPIENT_HASH, 2));
+
+        // Then
+        verify(versions).bump(RECIPIENT_HASH);
+        verify(pendingIndex).add(RECIPIENT_HASH, -2);
+        verify(watchRegistry, never()).signal(anyString());
+        verify(liveDelivery, never()).publish(anyString(), any());
+    }
+
+    @Test
+    public void testSubscribe_Reconnect_ShouldRotateEpochAndInvalidateIndex() {
+        // Given
+        dispatcher.subscribe();
+        ArgumentCaptor<Runnable> reconnect = ArgumentCaptor.forClass(Runnable.class);
+        verify(eventBus).onReconnect(reconnect.capture());
+
+        // When
+        reconnect.getValue().run();
+
+        // Then
+        verify(versions).rotateEpoch();
+        verify(pendingIndex).invalidate();
+    }
+}
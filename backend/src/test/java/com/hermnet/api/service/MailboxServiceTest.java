@@ -0,0 +1,587 @@
+package com.hermnet.api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hermnet.api.dto.MailboxSummaryResponse;
+import com.hermnet.api.dto.MessageListResponse;
+import com.hermnet.api.dto.MessageMetadata;
+import com.hermnet.api.dto.SendMessageRequest;
+import com.hermnet.api.events.MailboxEvent;
+import com.hermnet.api.events.MailboxEventBus;
+import com.hermnet.api.model.MailboxSummary;
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.AcknowledgedPacket;
+import com.hermnet.api.repository.MailboxSummaryRepository;
+import com.hermnet.api.repository.MessageRepository;
+import com.hermnet.api.repository.MessageSummary;
+import com.hermnet.api.repository.NotificationOutboxRepository;
+import com.hermnet.api.storage.PacketStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for MailboxService.
+ *
+ * Verifies the streaming length checks of the upload path, the JSON and
+ * binary layouts of the paged sync, that streamed messages are released
+ * from the persistence context, the packet-free listing and single packet
+ * download, that acknowledged packets are freed, and that the mailbox summary
+ * and the notification outbox are kept up to date.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MailboxServiceTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private MailboxSummaryRepository summaryRepository;
+
+    @Mock
+    private NotificationOutboxRepository outboxRepository;
+
+    @Mock
+    private PacketStore packetStore;
+
+    @Mock
+    private MailboxEventBus eventBus;
+
+    @Mock
+    private MailboxVersions versions;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private MailboxService mailboxService;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(mailboxService, "maxPacketBytes", 4L);
+        ReflectionTestUtils.setField(mailboxService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(mailboxService, "maxPageSize", 3);
+        ReflectionTestUtils.setField(mailboxService, "visibilityTimeout", Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testStorePacket_WithinLimit_ShouldInsertStreamingAndReturnId() {
+        // Given
+        when(packetStore.store(eq(RECIPIENT_HASH), any(InputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(1, InputStream.class).readAllBytes();
+                    return 7L;
+                });
+
+        // When
+        long id = mailboxService.storePacket(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 1, 2, 3 }), -1);
+
+        // Then
+        assertEquals(7L, id);
+        verify(summaryRepository).recordStored(eq(RECIPIENT_HASH), eq(3L), any(LocalDateTime.class));
+        verify(outboxRepository).recordPending(eq(RECIPIENT_HASH), any(LocalDateTime.class));
+        verify(eventBus).publish(MailboxEvent.stored(RECIPIENT_HASH, 7L, 3L));
+    }
+
+    @Test
+    public void testStoreSharedPacket_ShouldStoreOnceAndShareWithOtherRecipients() {
+        // Given
+        ReflectionTestUtils.setField(mailboxService, "maxRecipients", 3);
+        when(packetStore.store(eq("HNET-A"), any(InputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(1, InputStream.class).readAllBytes();
+                    return 7L;
+                });
+        when(messageRepository.shareWith(7L, List.of("HNET-B", "HNET-C"))).thenReturn(List.of(8L, 9L));
+
+        // When
+        List<Long> ids = mailboxService.storeSharedPacket(List.of("HNET-A", "HNET-B", "HNET-A", "HNET-C"),
+                new ByteArrayInputStream(new byte[] { 1, 2 }), -1);
+
+        // Then
+        assertEquals(List.of(7L, 8L, 9L), ids);
+        verify(packetStore, times(1)).store(any(), any());
+        verify(eventBus).publish(MailboxEvent.stored("HNET-A", 7L, 2L));
+        verify(eventBus).publish(MailboxEvent.stored("HNET-B", 8L, 2L));
+        verify(eventBus).publish(MailboxEvent.stored("HNET-C", 9L, 2L));
+        verify(summaryRepository).recordStored(eq("HNET-C"), eq(2L), any(LocalDateTime.class));
+        verify(outboxRepository, times(3)).recordPending(anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    public void testStorePackets_ShouldStoreBatchThroughPacketStore() {
+        // Given
+        when(packetStore.storeAll(anyList())).thenReturn(List.of(4L, 5L));
+
+        // When
+        List<Long> ids = mailboxService.storePackets(List.of(
+                new SendMessageRequest("HNET-A", new byte[] { 1, 2 }),
+                new SendMessageRequest("HNET-B", new byte[] { 3 })));
+
+        // Then
+        assertEquals(List.of(4L, 5L), ids);
+        verify(packetStore).storeAll(argThat(uploads -> uploads.size() == 2
+                && uploads.get(0).recipientHash().equals("HNET-A")
+                && uploads.get(1).recipientHash().equals("HNET-B")));
+        verify(eventBus).publish(MailboxEvent.stored("HNET-A", 4L, 2L));
+        verify(eventBus).publish(MailboxEvent.stored("HNET-B", 5L, 1L));
+    }
+
+    @Test
+    public void testStorePackets_WithOversizedPacket_ShouldRejectBeforeStoring() {
+        assertThrows(PacketTooLargeException.class, () -> mailboxService.storePackets(List.of(
+                new SendMessageRequest("HNET-A", new byte[] { 1 }),
+                new SendMessageRequest("HNET-B", new byte[5]))));
+
+        verifyNoInteractions(packetStore, eventBus);
+    }
+
+    @Test
+    public void testStoreSharedPacket_WithTooManyRecipients_ShouldRejectWithoutReading() {
+        ReflectionTestUtils.setField(mailboxService, "maxRecipients", 1);
+
+        assertThrows(IllegalArgumentException.class, () -> mailboxService.storeSharedPacket(
+                List.of("HNET-A", "HNET-B"), new ByteArrayInputStream(new byte[] { 1 }), 1));
+        assertThrows(IllegalArgumentException.class, () -> mailboxService.storeSharedPacket(
+                List.of(), new ByteArrayInputStream(new byte[] { 1 }), 1));
+
+        verifyNoInteractions(packetStore);
+    }
+
+    @Test
+    public void testStorePacket_WithDeclaredLengthOverLimit_ShouldRejectWithoutReading() {
+        // When/Then
+        assertThrows(PacketTooLargeException.class,
+                () -> mailboxService.storePacket(RECIPIENT_HASH, new ByteArrayInputStream(new byte[5]), 5));
+
+        verify(packetStore, never()).store(any(), any());
+    }
+
+    @Test
+    public void testStorePacket_WithStreamOverLimit_ShouldThrowPacketTooLarge() {
+        // Given - the store wraps the stream failure in its own exception
+        when(packetStore.store(eq(RECIPIENT_HASH), any(InputStream.class)))
+                .thenAnswer(invocation -> {
+                    try {
+                        invocation.getArgument(1, InputStream.class).readAllBytes();
+                    } catch (IOException e) {
+                        throw new DataIntegrityViolationException("Unexpected error writing large object", e);
+                    }
+                    return 7L;
+                });
+
+        // When/Then
+        assertThrows(PacketTooLargeException.class,
+                () -> mailboxService.storePacket(RECIPIENT_HASH, new ByteArrayInputStream(new byte[10]), -1));
+    }
+
+    @Test
+    public void testStorePacket_WithEmptyStream_ShouldThrowIllegalArgumentBeforeStoring() {
+        // When/Then
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> mailboxService.storePacket(RECIPIENT_HASH, new ByteArrayInputStream(new byte[0]), 0));
+
+        assertEquals("Stego image cannot be empty", exception.getMessage());
+        verifyNoInteractions(packetStore);
+    }
+
+    @Test
+    public void testWritePackets_WithFullPage_ShouldWriteMessagesAndNextCursor() throws Exception {
+        // Given
+        Message first = Message.builder().messageId(6L).packetRef("ab/first.pkt").build();
+        Message second = Message.builder().messageId(9L).packetRef("ab/second.pkt").build();
+
+        when(messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 5L,
+                Limit.of(2))).thenReturn(Stream.of(first, second));
+        when(packetStore.open(first)).thenReturn(new ByteArrayInputStream(new byte[] { 1, 2 }));
+        when(packetStore.open(second)).thenReturn(new ByteArrayInputStream(new byte[] { 3 }));
+        when(packetStore.size(first)).thenReturn(2L);
+        when(packetStore.size(second)).thenReturn(1L);
+
+        // When
+        JsonNode page = writePackets(5L, null);
+
+        // Then
+        assertEquals(2, page.get("messages").size());
+        assertEquals(6L, page.get("messages").get(0).get("messageId").asLong());
+        assertArrayEquals(new byte[] { 1, 2 }, page.get("messages").get(0).get("stegoImage").binaryValue());
+        assertEquals(9L, page.get("messages").get(1).get("messageId").asLong());
+        assertArrayEquals(new byte[] { 3 }, page.get("messages").get(1).get("stegoImage").binaryValue());
+        assertEquals(9L, page.get("next").asLong(), "A full page should point to the next one");
+        verify(messageRepository).detach(first);
+        verify(messageRepository).detach(second);
+    }
+
+    @Test
+    public void testWritePackets_WithShortPage_ShouldWriteNullCursor() throws Exception {
+        // Given - the requested limit is capped at the maximum page size
+        when(messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 0L,
+                Limit.of(3))).thenReturn(Stream.empty());
+
+        // When
+        JsonNode page = writePackets(0L, 50);
+
+        // Then
+        assertEquals(0, page.get("messages").size());
+        assertTrue(page.get("next").isNull());
+    }
+
+    @Test
+    public void testWritePackets_WithNonPositiveLimit_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> writePackets(0L, 0));
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    public void testStreamMailbox_ShouldWriteLengthPrefixedFrames() throws Exception {
+        // Given
+        Message first = Message.builder().messageId(1L).stegoPacket(new byte[] { 1, 2, 3 }).build();
+        Message second = Message.builder().messageId(2L).stegoPacket(new byte[] { 4 }).build();
+
+        when(messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 0L,
+                Limit.of(2))).thenReturn(Stream.of(first, second));
+        when(packetStore.size(any(Message.class)))
+                .thenAnswer(invocation -> (long) invocation.getArgument(0, Message.class).getStegoPacket().length);
+        doAnswer(invocation -> {
+            byte[] packet = invocation.getArgument(0, Message.class).getStegoPacket();
+            invocation.getArgument(1, WritableByteChannel.class).write(ByteBuffer.wrap(packet));
+            return null;
+        }).when(packetStore).transferTo(any(Message.class), any(WritableByteChannel.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        mailboxService.streamMailbox(RECIPIENT_HASH, 0L, null, out);
+
+        // Then
+        DataInputStream frames = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1L, frames.readLong());
+        assertEquals(3, frames.readInt());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, frames.readNBytes(3));
+
+        assertEquals(2L, frames.readLong());
+        assertEquals(1, frames.readInt());
+        assertArrayEquals(new byte[] { 4 }, frames.readNBytes(1));
+
+        assertEquals(-1, frames.read(), "Stream should end after the last frame");
+
+        verify(messageRepository).detach(first);
+        verify(messageRepository).detach(second);
+    }
+
+    @Test
+    public void testStreamMailbox_WithEmptyMailbox_ShouldWriteNothing() throws Exception {
+        // Given
+        when(messageRepository.streamByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 7L,
+                Limit.of(3))).thenReturn(Stream.empty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        mailboxService.streamMailbox(RECIPIENT_HASH, 7L, 3, out);
+
+        // Then
+        assertEquals(0, out.size());
+        verify(messageRepository, never()).detach(any(Message.class));
+    }
+
+    @Test
+    public void testLeaseMailbox_ShouldLeaseForVisibilityTimeoutAndWriteFrames() throws Exception {
+        // Given
+        Message message = Message.builder().messageId(5L).stegoPacket(new byte[] { 9, 8 }).build();
+
+        when(messageRepository.lease(eq(RECIPIENT_HASH), eq(3), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(5L));
+        when(messageRepository.streamByMessageIdInOrderByMessageIdAsc(List.of(5L))).thenReturn(Stream.of(message));
+        when(packetStore.size(message)).thenReturn(2L);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, WritableByteChannel.class).write(ByteBuffer.wrap(new byte[] { 9, 8 }));
+            return null;
+        }).when(packetStore).transferTo(eq(message), any(WritableByteChannel.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        mailboxService.leaseMailbox(RECIPIENT_HASH, 5, out);
+
+        // Then
+        DataInputStream frames = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(5L, frames.readLong());
+        assertEquals(2, frames.readInt());
+        assertArrayEquals(new byte[] { 9, 8 }, frames.readNBytes(2));
+        assertEquals(-1, frames.read());
+
+        verify(messageRepository).lease(eq(RECIPIENT_HASH), eq(3), any(LocalDateTime.class),
+                argThat(until -> until.isAfter(LocalDateTime.now().plusSeconds(20))));
+        verify(messageRepository).detach(message);
+    }
+
+    @Test
+    public void testLeaseMailbox_WithNothingVisible_ShouldWriteNothing() throws Exception {
+        // Given
+        when(messageRepository.lease(eq(RECIPIENT_HASH), eq(2), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        mailboxService.leaseMailbox(RECIPIENT_HASH, null, out);
+
+        // Then
+        assertEquals(0, out.size());
+        verify(messageRepository, never()).streamByMessageIdInOrderByMessageIdAsc(any());
+    }
+
+    @Test
+    public void testListMessages_WithFullPage_ShouldReturnMetadataAndNextCursor() {
+        // Given
+        when(messageRepository.findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 0L,
+                Limit.of(2))).thenReturn(List.of(summary(4L, 10L), summary(6L, null)));
+
+        // When
+        MessageListResponse page = mailboxService.listMessages(RECIPIENT_HASH, 0L, null);
+
+        // Then
+        assertEquals(2, page.messages().size());
+        assertEquals(4L, page.messages().get(0).messageId());
+        assertEquals(10L, page.messages().get(0).size());
+        assertNull(page.messages().get(1).size());
+        assertEquals(6L, page.next());
+        verifyNoInteractions(packetStore);
+    }
+
+    @Test
+    public void testListMessages_WithShortPage_ShouldReturnNullCursor() {
+        // Given
+        when(messageRepository.findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 6L,
+                Limit.of(3))).thenReturn(List.of(summary(7L, 10L)));
+
+        // When
+        MessageListResponse page = mailboxService.listMessages(RECIPIENT_HASH, 6L, 10);
+
+        // Then
+        assertEquals(1, page.messages().size());
+        assertNull(page.next());
+    }
+
+    @Test
+    public void testListMessages_Coalesced_ShouldOnlyOpenTransactionForSharedQuery() throws Exception {
+        // Given - the first listing's query blocks until a second identical listing waits for it
+        CountDownLatch queryRunning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageRepository.findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(RECIPIENT_HASH, 0L,
+                Limit.of(2))).thenAnswer(invocation -> {
+                    queryRunning.countDown();
+                    release.await();
+                    return List.of(summary(4L, 10L));
+                });
+        AtomicReference<MessageListResponse> leaderPage = new AtomicReference<>();
+        AtomicReference<MessageListResponse> waiterPage = new AtomicReference<>();
+        Thread leader = Thread.ofPlatform()
+                .start(() -> leaderPage.set(mailboxService.listMessages(RECIPIENT_HASH, 0L, null)));
+        assertTrue(queryRunning.await(5, TimeUnit.SECONDS));
+
+        // When
+        Thread waiter = Thread.ofPlatform()
+                .start(() -> waiterPage.set(mailboxService.listMessages(RECIPIENT_HASH, 0L, null)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waiter.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        verify(transactionManager, times(1)).getTransaction(any());
+        release.countDown();
+        leader.join(5000);
+        waiter.join(5000);
+
+        // Then
+        assertEquals(1, waiterPage.get().messages().size());
+        assertSame(leaderPage.get(), waiterPage.get());
+        verify(transactionManager, times(1)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(messageRepository, times(1)).findByRecipientHashAndMessageIdGreaterThanOrderByMessageIdAsc(
+                RECIPIENT_HASH, 0L, Limit.of(2));
+    }
+
+    @Test
+    public void testFindMessage_ShouldOnlyFindRecipientMessages() {
+        // Given
+        when(messageRepository.findByMessageIdAndRecipientHash(4L, RECIPIENT_HASH))
+                .thenReturn(Optional.of(summary(4L, 10L)));
+        when(messageRepository.findByMessageIdAndRecipientHash(5L, RECIPIENT_HASH)).thenReturn(Optional.empty());
+
+        // When
+        Optional<MessageMetadata> found = mailboxService.findMessage(RECIPIENT_HASH, 4L);
+        Optional<MessageMetadata> missing = mailboxService.findMessage(RECIPIENT_HASH, 5L);
+
+        // Then
+        assertEquals(10L, found.orElseThrow().size());
+        assertTrue(missing.isEmpty());
+    }
+
+    @Test
+    public void testWritePacket_ShouldTransferPacketOfRecipientMessage() throws Exception {
+        // Given
+        Message message = Message.builder().messageId(4L).recipientHash(RECIPIENT_HASH).build();
+        when(messageRepository.findById(4L)).thenReturn(Optional.of(message));
+        doAnswer(invocation -> {
+            WritableByteChannel channel = invocation.getArgument(1);
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+            return null;
+        }).when(packetStore).transferTo(eq(message), any(WritableByteChannel.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        mailboxService.writePacket(RECIPIENT_HASH, 4L, out);
+
+        // Then
+        assertArrayEquals(new byte[] { 1, 2, 3 }, out.toByteArray());
+    }
+
+    @Test
+    public void testWritePacket_OfOtherRecipient_ShouldThrowNoSuchElement() throws Exception {
+        // Given
+        Message message = Message.builder().messageId(4L).recipientHash("HNET-OTHER").build();
+        when(messageRepository.findById(4L)).thenReturn(Optional.of(message));
+
+        // When & Then
+        assertThrows(NoSuchElementException.class,
+                () -> mailboxService.writePacket(RECIPIENT_HASH, 4L, new ByteArrayOutputStream()));
+        verify(packetStore, never()).transferTo(any(), any());
+    }
+
+    @Test
+    public void testAcknowledge_UpTo_ShouldBulkDeleteAndReleasePackets() {
+        // Given
+        when(messageRepository.deleteAcknowledged(RECIPIENT_HASH, 9L)).thenReturn(List.of(
+                new AcknowledgedPacket("a", 10), new AcknowledgedPacket(null, 20), new AcknowledgedPacket("b", 30)));
+
+        // When
+        int deleted = mailboxService.acknowledge(RECIPIENT_HASH, null, 9L);
+
+        // Then
+        assertEquals(3, deleted);
+        verify(packetStore).delete(Arrays.asList("a", null, "b"));
+        verify(summaryRepository).recordRemoved(RECIPIENT_HASH, 3, 60);
+        verify(eventBus).publish(MailboxEvent.acknowledged(RECIPIENT_HASH, 3));
+        verify(messageRepository, never()).deleteAcknowledged(eq(RECIPIENT_HASH), anyCollection());
+    }
+
+    @Test
+    public void testAcknowledge_ByIds_ShouldBulkDeleteAndReleasePackets() {
+        // Given
+        List<Long> messageIds = List.of(3L, 5L);
+        when(messageRepository.deleteAcknowledged(RECIPIENT_HASH, messageIds))
+                .thenReturn(List.of(new AcknowledgedPacket("c", 5)));
+
+        // When
+        int deleted = mailboxService.acknowledge(RECIPIENT_HASH, messageIds, null);
+
+        // Then
+        assertEquals(1, deleted);
+        verify(packetStore).delete(List.of("c"));
+    }
+
+    @Test
+    public void testAcknowledge_WithoutIdsOrHighWaterMark_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> mailboxService.acknowledge(RECIPIENT_HASH, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> mailboxService.acknowledge(RECIPIENT_HASH, List.of(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> mailboxService.acknowledge(RECIPIENT_HASH, List.of(1L), 1L));
+
+        verifyNoInteractions(messageRepository, packetStore, eventBus);
+    }
+
+    @Test
+    public void testSummarize_ShouldReadMaintainedCounters() {
+        // Given
+        LocalDateTime oldest = LocalDateTime.of(2026, 1, 1, 12, 0);
+        when(summaryRepository.findById(RECIPIENT_HASH)).thenReturn(Optional.of(MailboxSummary.builder()
+                .recipientHash(RECIPIENT_HASH)
+                .messageCount(2)
+                .totalBytes(1024)
+                .oldestCreatedAt(oldest)
+                .build()));
+
+        // When
+        MailboxSummaryResponse summary = mailboxService.summarize(RECIPIENT_HASH);
+
+        // Then
+        assertEquals(new MailboxSummaryResponse(2, 1024, oldest), summary);
+        verifyNoInteractions(messageRepository, packetStore);
+    }
+
+    @Test
+    public void testSummarize_WithoutSummary_ShouldReportEmptyMailbox() {
+        when(summaryRepository.findById(RECIPIENT_HASH)).thenReturn(Optional.empty());
+
+        assertEquals(new MailboxSummaryResponse(0, 0, null), mailboxService.summarize(RECIPIENT_HASH));
+    }
+
+    private static MessageSummary summary(long messageId, Long packetSize) {
+        return new MessageSummary() {
+            @Override
+            public Long getMessageId() {
+                return messageId;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return LocalDateTime.now();
+            }
+
+            @Override
+            public Long getPacketSize() {
+                return packetSize;
+            }
+        };
+    }
+
+    private JsonNode writePackets(long after, Integer limit) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = objectMapper.createGenerator(out)) {
+            mailboxService.writePackets(RECIPIENT_HASH, after, limit, json);
+        }
+        return objectMapper.readTree(out.toByteArray());
+    }
+}
@@ -0,0 +1,45 @@
+package com.hermnet.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MailboxVersions.
+ *
+ * Verifies that entity tags change with every mailbox change and that
+ * rotating the epoch invalidates every tag issued before.
+ */
+public class MailboxVersionsTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    private final MailboxVersions versions = new MailboxVersions();
+
+    @Test
+    public void testBump_ShouldChangeTag() {
+        // Given
+        String before = versions.etag(RECIPIENT_HASH);
+
+        // When
+        versions.bump(RECIPIENT_HASH);
+
+        // Then
+        assertNotEquals(before, versions.etag(RECIPIENT_HASH));
+        assertEquals(versions.etag(RECIPIENT_HASH), versions.etag(RECIPIENT_HASH));
+    }
+
+    @Test
+    public void testRotateEpoch_ShouldInvalidateTagsIssuedBefore() {
+        // Given
+        versions.bump(RECIPIENT_HASH);
+        String before = versions.etag(RECIPIENT_HASH);
+
+        // When
+        versions.rotateEpoch();
+
+        // Then
+        assertEquals(1, versions.version(RECIPIENT_HASH));
+        assertNotEquals(before, versions.etag(RECIPIENT_HASH));
+    }
+}
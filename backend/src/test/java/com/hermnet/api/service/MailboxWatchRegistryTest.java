@@ -0,0 +1,59 @@
+package com.hermnet.api.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MailboxWatchRegistry.
+ *
+ * Verifies that listeners are one-shot, scoped to their recipient and can be
+ * cancelled.
+ */
+public class MailboxWatchRegistryTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    private final MailboxWatchRegistry registry = new MailboxWatchRegistry();
+
+    @AfterEach
+    public void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    public void testSignal_ShouldRunListenersOfRecipientOnce() throws Exception {
+        // Given
+        CountDownLatch woken = new CountDownLatch(2);
+        AtomicInteger other = new AtomicInteger();
+        registry.watch(RECIPIENT_HASH, woken::countDown);
+        registry.watch(RECIPIENT_HASH, woken::countDown);
+        registry.watch("HNET-OTHER", other::incrementAndGet);
+
+        // When
+        registry.signal(RECIPIENT_HASH);
+
+        // Then
+        assertTrue(woken.await(5, TimeUnit.SECONDS), "Both listeners should run");
+        assertEquals(0, other.get());
+        assertEquals(1, registry.watchedMailboxes(), "Fired listeners should be removed");
+    }
+
+    @Test
+    public void testCancel_ShouldRemoveListener() {
+        // Given
+        MailboxWatchRegistry.Watch watch = registry.watch(RECIPIENT_HASH, () -> fail("Cancelled listener ran"));
+
+        // When
+        watch.cancel();
+        registry.signal(RECIPIENT_HASH);
+
+        // Then
+        assertEquals(0, registry.watchedMailboxes());
+    }
+}
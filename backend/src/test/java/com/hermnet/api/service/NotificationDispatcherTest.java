@@ -0,0 +1,202 @@
+package com.hermnet.api.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for NotificationDispatcher.
+ *
+ * Verifies that notifications are sent by the workers rather than the caller,
+ * that queued notifications are sent together and their outcome published,
+ * that notifications for the same device are coalesced and debounced, and the
+ * behavior of each overflow policy when the queue is full, including that
+ * dropped notifications are published as failures.
+ */
+@ExtendWith(MockitoExtension.class)
+public class NotificationDispatcherTest {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testEnqueue_ShouldSendOnWorkerThread() throws Exception {
+        // Given
+        dispatcher = newDispatcher(10, 1, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+        CountDownLatch sent = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        doAnswer(invocation -> {
+            assertNotSame(caller, Thread.currentThread(), "Notifications should not be sent by the caller");
+            sent.countDown();
+            return List.of();
+        }).when(notificationService).sendSyncNotifications(List.of("token-1"));
+
+        // When
+        dispatcher.enqueue("token-1");
+
+        // Then
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(1, dispatcher.enqueuedCount());
+    }
+
+    @Test
+    public void testDrain_ShouldSendQueuedNotificationsInOneBatch() throws Exception {
+        // Given
+        dispatcher = newDispatcher(10, 1, NotificationDispatcher.OverflowPolicy.DROP_NEWEST,
+                Duration.ofSeconds(1), Duration.ZERO);
+        NotificationFailure failure = new NotificationFailure("token-2", MessagingErrorCode.UNREGISTERED);
+        when(notificationService.sendSyncNotifications(List.of("token-1", "token-2", "token-3")))
+                .thenReturn(List.of(failure));
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-2", "token-3"));
+
+        // Then
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.sentCount() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, dispatcher.sentCount());
+        verify(notificationService, times(1)).sendSyncNotifications(anyList());
+        assertEquals(1, dispatcher.failedCount());
+        verify(eventPublisher, timeout(5000))
+                .publishEvent(new NotificationsSent(List.of("token-1", "token-3"), List.of(failure)));
+    }
+
+    @Test
+    public void testEnqueue_WhenAlreadyPending_ShouldCoalesce() {
+        // Given
+        dispatcher = newDispatcher(10, 0, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-1", "token-2", "token-1"));
+
+        // Then
+        assertEquals(2, dispatcher.depth());
+        assertEquals(2, dispatcher.coalescedCount());
+    }
+
+    @Test
+    public void testEnqueue_WithinDebounceInterval_ShouldHoldBackUntilIntervalPassed() throws Exception {
+        // Given
+        dispatcher = newDispatcher(10, 1, NotificationDispatcher.OverflowPolicy.DROP_NEWEST,
+                Duration.ofMillis(5), Duration.ofMillis(300));
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            first.countDown();
+            second.countDown();
+            return List.of();
+        }).when(notificationService).sendSyncNotifications(List.of("token-1"));
+        dispatcher.enqueue("token-1");
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-1", "token-1"));
+
+        // Then
+        assertFalse(second.await(100, TimeUnit.MILLISECONDS), "Should wait for the debounce interval");
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        Thread.sleep(400);
+        verify(notificationService, times(2)).sendSyncNotifications(List.of("token-1"));
+        assertEquals(2, dispatcher.coalescedCount());
+    }
+
+    @Test
+    public void testEnqueue_WhenFull_DropNewest_ShouldKeepQueuedNotifications() {
+        // Given
+        dispatcher = newDispatcher(2, 0, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-2", "token-3"));
+
+        // Then
+        assertEquals(2, dispatcher.depth());
+        assertEquals(1, dispatcher.droppedCount());
+        verifyNoInteractions(notificationService);
+        verify(eventPublisher)
+                .publishEvent(new NotificationsSent(List.of(), List.of(new NotificationFailure("token-3", null))));
+    }
+
+    @Test
+    public void testEnqueue_WhenFull_DropOldest_ShouldMakeRoom() {
+        // Given
+        dispatcher = newDispatcher(2, 0, NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-2", "token-3"));
+
+        // Then
+        assertEquals(2, dispatcher.depth());
+        assertEquals(1, dispatcher.droppedCount());
+        assertEquals(3, dispatcher.enqueuedCount());
+        verify(eventPublisher)
+                .publishEvent(new NotificationsSent(List.of(), List.of(new NotificationFailure("token-1", null))));
+    }
+
+    @Test
+    public void testEnqueue_WhenFull_CallerRuns_ShouldSendSynchronously() {
+        // Given
+        dispatcher = newDispatcher(1, 0, NotificationDispatcher.OverflowPolicy.CALLER_RUNS);
+
+        // When
+        dispatcher.enqueueAll(List.of("token-1", "token-2"));
+
+        // Then
+        verify(notificationService).sendSyncNotifications(List.of("token-2"));
+        assertEquals(1, dispatcher.depth());
+        assertEquals(0, dispatcher.droppedCount());
+        assertEquals(1, dispatcher.sentCount());
+    }
+
+    @Test
+    public void testEnqueue_WithEmptyToken_ShouldIgnoreIt() {
+        dispatcher = newDispatcher(2, 0, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+
+        dispatcher.enqueue(null);
+        dispatcher.enqueue("");
+
+        assertEquals(0, dispatcher.depth());
+    }
+
+    private NotificationDispatcher newDispatcher(int capacity, int workers,
+            NotificationDispatcher.OverflowPolicy policy) {
+        return newDispatcher(capacity, workers, policy, Duration.ofMillis(5), Duration.ZERO);
+    }
+
+    private NotificationDispatcher newDispatcher(int capacity, int workers,
+            NotificationDispatcher.OverflowPolicy policy, Duration batchWindow, Duration debounce) {
+        NotificationDispatcher created = new NotificationDispatcher(notificationService, eventPublisher);
+        ReflectionTestUtils.setField(created, "queueCapacity", capacity);
+        ReflectionTestUtils.setField(created, "workers", workers);
+        ReflectionTestUtils.setField(created, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(created, "batchWindow", batchWindow);
+        ReflectionTestUtils.setField(created, "debounce", debounce);
+        ReflectionTestUtils.setField(created, "batchSize", 500);
+        created.start();
+        return created;
+    }
+}
@@ -0,0 +1,94 @@
+package com.hermnet.api.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.hermnet.api.model.User;
+import com.hermnet.api.repository.ClaimedNotification;
+import com.hermnet.api.repository.NotificationOutboxRepository;
+import com.hermnet.api.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for NotificationOutboxRelay.
+ *
+ * Verifies that due outbox entries are resolved to push tokens and queued,
+ * that entries are only removed once FCM has accepted their notification, and
+ * that entries of recipients without a token are dropped.
+ */
+@ExtendWith(MockitoExtension.class)
+public class NotificationOutboxRelayTest {
+
+    private static final ClaimedNotification ALICE = new ClaimedNotification("HNET-ALICE", 0, 1);
+    private static final ClaimedNotification BOB = new ClaimedNotification("HNET-BOB", 2, 1);
+
+    @Mock
+    private NotificationOutboxRepository outboxRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @InjectMocks
+    private NotificationOutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(relay, "batchSize", 500);
+        ReflectionTestUtils.setField(relay, "backoff", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(relay, "maxAttempts", 10);
+    }
+
+    @Test
+    public void testRelay_ShouldQueueTokensAndDropRecipientsWithoutToken() {
+        // Given
+        when(outboxRepository.claimDue(any(LocalDateTime.class), eq(500), eq(Duration.ofSeconds(5)),
+                eq(Duration.ofMinutes(10)))).thenReturn(List.of(ALICE, BOB));
+        when(userRepository.findAllById(List.of("HNET-ALICE", "HNET-BOB"))).thenReturn(List.of(
+                User.builder().idHash("HNET-ALICE").pushToken("alice-token").build(),
+                User.builder().idHash("HNET-BOB").build()));
+
+        // When
+        relay.relay();
+
+        // Then
+        verify(notificationDispatcher).enqueue("alice-token");
+        verifyNoMoreInteractions(notificationDispatcher);
+        verify(outboxRepository).acknowledge(List.of(BOB));
+    }
+
+    @Test
+    public void testOnNotificationsSent_ShouldAcknowledgeOnlyDeliveredEntries() {
+        // Given
+        when(outboxRepository.claimDue(any(LocalDateTime.class), anyInt(), any(), any()))
+                .thenReturn(List.of(ALICE, BOB));
+        when(userRepository.findAllById(any())).thenReturn(List.of(
+                User.builder().idHash("HNET-ALICE").pushToken("alice-token").build(),
+                User.builder().idHash("HNET-BOB").pushToken("bob-token").build()));
+        relay.relay();
+
+        // When
+        relay.onNotificationsSent(new NotificationsSent(List.of("alice-token"),
+                List.of(new NotificationFailure("bob-token", MessagingErrorCode.UNAVAILABLE))));
+        relay.onNotificationsSent(new NotificationsSent(List.of("bob-token"), List.of()));
+
+        // Then
+        verify(outboxRepository).acknowledge(List.of(ALICE));
+        verify(outboxRepository, times(2)).acknowledge(List.of());
+    }
+}
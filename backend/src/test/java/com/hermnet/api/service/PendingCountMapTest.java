@@ -0,0 +1,49 @@
+package com.hermnet.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PendingCountMap.
+ *
+ * Verifies counting, the zero floor and that entries survive table growth.
+ */
+public class PendingCountMapTest {
+
+    @Test
+    public void testAdd_ShouldCountPerRecipientAndNeverGoNegative() {
+        // Given
+        PendingCountMap map = new PendingCountMap(0);
+
+        // When
+        map.add("HNET-A", 2);
+        map.add("HNET-B", 1);
+        map.add("HNET-A", -1);
+        map.add("HNET-B", -5);
+        map.add("HNET-C", -1);
+
+        // Then
+        assertEquals(1, map.get("HNET-A"));
+        assertEquals(0, map.get("HNET-B"));
+        assertEquals(0, map.get("HNET-C"));
+        assertEquals(2, map.size(), "Deletes for unknown recipients should not create entries");
+    }
+
+    @Test
+    public void testAdd_ManyRecipients_ShouldKeepCountsAcrossResizes() {
+        // Given
+        PendingCountMap map = new PendingCountMap(0);
+
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            map.add("HNET-" + i, i % 7 + 1);
+        }
+
+        // Then
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 7 + 1, map.get("HNET-" + i));
+        }
+        assertEquals(0, map.get("HNET-UNKNOWN"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.hermnet.api.service;
+
+import com.hermnet.api.repository.MailboxCount;
+import com.hermnet.api.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PendingMailboxIndex.
+ *
+ * Verifies that the index only reports empty mailboxes once built, that
+ * packets stored while it is rebuilt are not lost and that deletions made
+ * meanwhile are not subtracted twice, and that an invalidated index falls
+ * back to the database until it has been rebuilt.
+ */
+@ExtendWith(MockitoExtension.class)
+public class PendingMailboxIndexTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @InjectMocks
+    private PendingMailboxIndex pendingIndex;
+
+    @Test
+    public void testMayHaveMail_BeforeFirstBuild_ShouldAssumeMail() {
+        assertTrue(pendingIndex.mayHaveMail("HNET-A"));
+    }
+
+    @Test
+    public void testRebuild_ShouldLoadCountsAndReplayConcurrentChanges() {
+        // Given
+        when(messageRepository.countByRecipient()).thenAnswer(invocation -> {
+            // A packet stored while the aggregate query runs
+            pendingIndex.add("HNET-B", 1);
+            return List.of(count("HNET-A", 2));
+        });
+
+        // When
+        pendingIndex.rebuild();
+
+        // Then
+        assertEquals(2, pendingIndex.count("HNET-A"));
+        assertTrue(pendingIndex.mayHaveMail("HNET-B"), "Changes during the rebuild should be replayed");
+        assertFalse(pendingIndex.mayHaveMail("HNET-C"));
+    }
+
+    @Test
+    public void testRebuild_ShouldNotSubtractDeletionsTwice() {
+        // Given
+        when(messageRepository.countByRecipient()).thenAnswer(invocation -> {
+            // An acknowledgement that the aggregate query already reflects
+            pendingIndex.add("HNET-A", -1);
+            return List.of(count("HNET-A", 1));
+        });
+
+        // When
+        pendingIndex.rebuild();
+
+        // Then
+        assertEquals(1, pendingIndex.count("HNET-A"));
+        assertTrue(pendingIndex.mayHaveMail("HNET-A"), "Mail still waiting must not be reported as gone");
+    }
+
+    @Test
+    public void testAdd_AfterBuild_ShouldTrackDeliveriesAndAcknowledgements() {
+        // Given
+        when(messageRepository.countByRecipient()).thenReturn(List.of());
+        pendingIndex.rebuild();
+
+        // When
+        pendingIndex.add("HNET-A", 1);
+        pendingIndex.add("HNET-A", 1);
+        pendingIndex.add("HNET-A", -2);
+
+        // Then
+        assertFalse(pendingIndex.mayHaveMail("HNET-A"));
+    }
+
+    @Test
+    public void testInvalidate_ShouldAssumeMailUntilRebuilt() throws Exception {
+        // Given
+        when(messageRepository.countByRecipient()).thenReturn(List.of());
+        pendingIndex.rebuild();
+        assertFalse(pendingIndex.mayHaveMail("HNET-A"));
+        CountDownLatch queryRunning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageRepository.countByRecipient()).thenAnswer(invocation -> {
+            queryRunning.countDown();
+            release.await();
+            return List.of(count("HNET-A", 1));
+        });
+
+        // When - mail arrived while the event bus was down
+        pendingIndex.invalidate();
+
+        // Then
+        assertTrue(queryRunning.await(5, TimeUnit.SECONDS), "Invalidation should start a rebuild");
+        assertTrue(pendingIndex.mayHaveMail("HNET-A"), "An invalidated index must not report empty mailboxes");
+        assertEquals(0, pendingIndex.count("HNET-A"));
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pendingIndex.count("HNET-A") == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(1, pendingIndex.count("HNET-A"));
+        assertFalse(pendingIndex.mayHaveMail("HNET-B"));
+    }
+
+    @Test
+    public void testRebuild_InvalidatedMeanwhile_ShouldStayNotReady() {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageRepository.countByRecipient())
+                .thenAnswer(invocation -> {
+                    // The bus reconnects while the aggregate query runs
+                    pendingIndex.invalidate();
+                    return List.of();
+                })
+                .thenAnswer(invocation -> {
+                    release.await();
+                    return List.of();
+                });
+
+        // When
+        pendingIndex.rebuild();
+
+        // Then
+        assertTrue(pendingIndex.mayHaveMail("HNET-A"), "A query that may have missed changes must not be trusted");
+        release.countDown();
+    }
+
+    private static MailboxCount count(String recipientHash, long count) {
+        return new MailboxCount() {
+            @Override
+            public String getRecipientHash() {
+                return recipientHash;
+            }
+
+            @Override
+            public long getMessageCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package com.hermnet.api.service;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.hermnet.api.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PushTokenPruner.
+ *
+ * Verifies that unregistered tokens are cleared in one update, that invalid
+ * tokens are cleared at once only when the message itself was accepted and
+ * otherwise after repeated failures, and that transient failures keep the
+ * token.
+ */
+@ExtendWith(MockitoExtension.class)
+public class PushTokenPrunerTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private PushTokenPruner pruner;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(pruner, "invalidTokenThreshold", 3);
+    }
+
+    @Test
+    public void testOnNotificationsSent_ShouldClearDeadTokensInOneUpdate() {
+        // Given
+        NotificationsSent event = new NotificationsSent(List.of("live-token"), List.of(
+                new NotificationFailure("gone-token", MessagingErrorCode.UNREGISTERED),
+                new NotificationFailure("bad-token", MessagingErrorCode.INVALID_ARGUMENT),
+                new NotificationFailure("busy-token", MessagingErrorCode.UNAVAILABLE),
+                new NotificationFailure("offline-token", null)));
+
+        // When
+        pruner.onNotificationsSent(event);
+
+        // Then
+        verify(userRepository).clearPushTokens(List.of("gone-token", "bad-token"));
+    }
+
+    @Test
+    public void testOnNotificationsSent_WhenNothingWasAccepted_ShouldKeepInvalidArgumentTokens() {
+        // Given
+        NotificationsSent event = new NotificationsSent(List.of(), List.of(
+                new NotificationFailure("token-1", MessagingErrorCode.INVALID_ARGUMENT),
+                new NotificationFailure("token-2", MessagingErrorCode.INVALID_ARGUMENT)));
+
+        // When
+        pruner.onNotificationsSent(event);
+
+        // Then
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    public void testOnNotificationsSent_SingleTokenRepeatedlyInvalid_ShouldClearTokenAtThreshold() {
+        // Given
+        NotificationsSent invalid = new NotificationsSent(List.of(),
+                List.of(new NotificationFailure("bad-token", MessagingErrorCode.INVALID_ARGUMENT)));
+
+        // When
+        pruner.onNotificationsSent(invalid);
+        pruner.onNotificationsSent(invalid);
+
+        // Then
+        verifyNoInteractions(userRepository);
+        pruner.onNotificationsSent(invalid);
+        verify(userRepository).clearPushTokens(List.of("bad-token"));
+    }
+
+    @Test
+    public void testOnNotificationsSent_DeliveryBetweenInvalidAnswers_ShouldResetCount() {
+        // Given
+        NotificationsSent invalid = new NotificationsSent(List.of(),
+                List.of(new NotificationFailure("token", MessagingErrorCode.INVALID_ARGUMENT)));
+        pruner.onNotificationsSent(invalid);
+        pruner.onNotificationsSent(invalid);
+
+        // When
+        pruner.onNotificationsSent(new NotificationsSent(List.of("token"), List.of()));
+        pruner.onNotificationsSent(invalid);
+        pruner.onNotificationsSent(invalid);
+
+        // Then
+        verifyNoInteractions(userRepository);
+    }
+}
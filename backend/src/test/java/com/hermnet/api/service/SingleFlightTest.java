@@ -0,0 +1,86 @@
+package com.hermnet.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight.
+ *
+ * Verifies that concurrent callers of the same key share one load and its
+ * outcome, and that nothing is cached afterwards.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    @Test
+    public void testExecute_ConcurrentCallers_ShouldShareOneLoad() throws Exception {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // When
+            Future<Integer> leader = executor.submit(() -> singleFlight.execute("HNET-A", () -> {
+                loading.countDown();
+                await(release);
+                return loads.incrementAndGet();
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            List<Future<Integer>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("HNET-A", loads::incrementAndGet)));
+            }
+            // Give the followers time to join the flight before it lands
+            Thread.sleep(100);
+            release.countDown();
+
+            // Then
+            assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+            for (Future<Integer> follower : followers) {
+                assertEquals(1, follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get(), "The loader should run once");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecute_AfterCompletion_ShouldLoadAgain() {
+        assertEquals(1, singleFlight.execute("HNET-A", () -> 1));
+        assertEquals(2, singleFlight.execute("HNET-A", () -> 2));
+    }
+
+    @Test
+    public void testExecute_WhenLoaderFails_ShouldRethrow() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> singleFlight.execute("HNET-A", () -> {
+                    throw failure;
+                })));
+        assertEquals(3, singleFlight.execute("HNET-A", () -> 3), "A failed flight should not be reused");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
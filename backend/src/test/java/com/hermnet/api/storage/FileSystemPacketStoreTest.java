@@ -0,0 +1,134 @@
+package com.hermnet.api.storage;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for FileSystemPacketStore.
+ *
+ * Verifies that packets are written to disk, referenced from the mailbox row,
+ * transferred back unchanged and removed on delete.
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileSystemPacketStoreTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+    private static final byte[] PACKET = new byte[] { 1, 2, 3, 4, 5 };
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @InjectMocks
+    private FileSystemPacketStore packetStore;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ReflectionTestUtils.setField(packetStore, "directory", tempDir.toString());
+        packetStore.init();
+    }
+
+    @Test
+    public void testStore_ShouldWriteFileAndSaveReference() throws Exception {
+        // Given
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setMessageId(42L);
+            return message;
+        });
+
+        // When
+        long id = packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(PACKET));
+
+        // Then
+        assertEquals(42L, id);
+
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository).save(captor.capture());
+        Message saved = captor.getValue();
+
+        assertEquals(RECIPIENT_HASH, saved.getRecipientHash());
+        assertNull(saved.getStegoPacket(), "Packet bytes should not be stored in the row");
+        assertEquals(PACKET.length, saved.getPacketSize());
+        assertArrayEquals(PACKET, Files.readAllBytes(tempDir.resolve(saved.getPacketRef())));
+    }
+
+    @Test
+    public void testTransferToAndOpen_ShouldReturnStoredBytes() throws Exception {
+        // Given
+        Message message = storeAndCapture();
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packetStore.transferTo(message, Channels.newChannel(out));
+
+        byte[] opened;
+        try (InputStream in = packetStore.open(message)) {
+            opened = in.readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(PACKET, out.toByteArray());
+        assertArrayEquals(PACKET, opened);
+        assertEquals(PACKET.length, packetStore.size(message));
+    }
+
+    @Test
+    public void testDelete_ShouldRemoveFile() throws Exception {
+        // Given
+        Message message = storeAndCapture();
+        Path file = tempDir.resolve(message.getPacketRef());
+        assertTrue(Files.exists(file));
+
+        // When
+        packetStore.delete(Arrays.asList(message.getPacketRef(), null));
+
+        // Then
+        assertFalse(Files.exists(file), "Packet file should be deleted");
+    }
+
+    @Test
+    public void testOpen_WithReferenceOutsideStore_ShouldBeRejected() {
+        // Given
+        Message message = Message.builder().packetRef("../outside.pkt").build();
+
+        // When/Then
+        assertThrows(IllegalArgumentException.class, () -> packetStore.open(message));
+    }
+
+    private Message storeAndCapture() {
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setMessageId(1L);
+            return message;
+        });
+        packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(PACKET));
+
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
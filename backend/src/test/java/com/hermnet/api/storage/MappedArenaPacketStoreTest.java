@@ -0,0 +1,169 @@
+package com.hermnet.api.storage;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for MappedArenaPacketStore.
+ *
+ * Verifies slot allocation and release, behaviour when the arena is full and
+ * recovery of slot occupancy after a restart, reconciled with the stored
+ * messages.
+ */
+public class MappedArenaPacketStoreTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @TempDir
+    Path tempDir;
+
+    private MessageRepository messageRepository;
+    private MappedArenaPacketStore packetStore;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        messageRepository = mock(MessageRepository.class);
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setMessageId(1L);
+            return message;
+        });
+        packetStore = newStore();
+    }
+
+    @Test
+    public void testStore_ShouldWriteIntoSlotAndReadBack() throws Exception {
+        // When
+        Message message = store(new byte[] { 1, 2, 3 });
+
+        // Then
+        assertNull(message.getStegoPacket(), "Packet bytes should not be stored in the row");
+        assertEquals("0", message.getPacketRef());
+        assertEquals(3L, packetStore.size(message));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read(message));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, transfer(message));
+    }
+
+    @Test
+    public void testStore_WhenArenaIsFull_ShouldThrowUntilSlotIsFreed() throws Exception {
+        // Given
+        Message first = store(new byte[] { 1 });
+        store(new byte[] { 2 });
+
+        // When / Then
+        assertThrows(PacketStoreFullException.class,
+                () -> packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 3 })));
+
+        packetStore.delete(List.of(first.getPacketRef()));
+        Message reused = store(new byte[] { 4 });
+        assertEquals(first.getPacketRef(), reused.getPacketRef(), "Freed slot should be reused");
+        assertArrayEquals(new byte[] { 4 }, read(reused));
+    }
+
+    @Test
+    public void testDelete_Twice_ShouldFreeSlotOnce() throws Exception {
+        // Given
+        Message first = store(new byte[] { 1 });
+        store(new byte[] { 2 });
+
+        // When
+        packetStore.delete(List.of(first.getPacketRef()));
+        packetStore.delete(List.of(first.getPacketRef()));
+
+        // Then
+        store(new byte[] { 3 });
+        assertThrows(PacketStoreFullException.class,
+                () -> packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[] { 4 })));
+    }
+
+    @Test
+    public void testStore_WhenPacketOverflowsSlot_ShouldReleaseSlot() throws Exception {
+        // When
+        assertThrows(UncheckedIOException.class,
+                () -> packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(new byte[17])));
+
+        // Then
+        verify(messageRepository, never()).save(any(Message.class));
+        assertEquals("0", store(new byte[16]).getPacketRef());
+    }
+
+    @Test
+    public void testRestart_ShouldRecoverOccupiedSlots() throws Exception {
+        // Given
+        Message kept = store(new byte[] { 7, 7 });
+        Message deleted = store(new byte[] { 9 });
+        packetStore.delete(List.of(deleted.getPacketRef()));
+        when(messageRepository.findDistinctPacketRefs()).thenReturn(List.of(kept.getPacketRef()));
+
+        // When
+        packetStore = newStore();
+
+        // Then
+        assertArrayEquals(new byte[] { 7, 7 }, read(kept));
+        assertEquals(deleted.getPacketRef(), store(new byte[] { 5 }).getPacketRef(),
+                "Only the freed slot should be available after a restart");
+    }
+
+    @Test
+    public void testRestart_ShouldFreeSlotsNoMessageReferences() throws Exception {
+        // Given - the second packet was written but its message never committed
+        Message kept = store(new byte[] { 7, 7 });
+        Message leaked = store(new byte[] { 9 });
+        when(messageRepository.findDistinctPacketRefs()).thenReturn(List.of(kept.getPacketRef(), "ab/other.pkt"));
+
+        // When
+        packetStore = newStore();
+
+        // Then
+        assertArrayEquals(new byte[] { 7, 7 }, read(kept));
+        assertEquals(leaked.getPacketRef(), store(new byte[] { 5 }).getPacketRef(),
+                "Unreferenced slot should be freed after a restart");
+    }
+
+    private MappedArenaPacketStore newStore() throws Exception {
+        MappedArenaPacketStore store = new MappedArenaPacketStore(messageRepository);
+        ReflectionTestUtils.setField(store, "file", tempDir.resolve("packets.arena").toString());
+        ReflectionTestUtils.setField(store, "slotCount", 2);
+        ReflectionTestUtils.setField(store, "maxPacketBytes", 16);
+        store.init();
+        return store;
+    }
+
+    private Message store(byte[] packet) {
+        clearInvocations(messageRepository);
+        packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(packet));
+
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private byte[] read(Message message) throws Exception {
+        try (InputStream in = packetStore.open(message)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] transfer(Message message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packetStore.transferTo(message, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+}
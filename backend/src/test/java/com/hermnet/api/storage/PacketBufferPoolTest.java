@@ -0,0 +1,70 @@
+package com.hermnet.api.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PacketBufferPool.
+ *
+ * Verifies that packets are read into reusable direct buffers, that a buffer
+ * is returned to the pool when a packet does not fit, and that waiting for a
+ * buffer times out.
+ */
+public class PacketBufferPoolTest {
+
+    @Test
+    public void testRead_ShouldReturnFlippedDirectBuffer() throws Exception {
+        // Given
+        PacketBufferPool pool = new PacketBufferPool(1, 4, Duration.ofSeconds(5));
+
+        // When
+        ByteBuffer buffer = pool.read(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+
+        // Then
+        assertTrue(buffer.isDirect());
+        assertEquals(3, buffer.remaining());
+        assertEquals(1, buffer.get(0));
+    }
+
+    @Test
+    public void testRelease_ShouldReuseBuffer() {
+        // Given
+        PacketBufferPool pool = new PacketBufferPool(1, 4, Duration.ofSeconds(5));
+        ByteBuffer first = pool.acquire();
+
+        // When
+        pool.release(first);
+
+        // Then
+        assertSame(first, pool.acquire());
+    }
+
+    @Test
+    public void testAcquire_WhenAllBuffersAreInUse_ShouldTimeOut() {
+        // Given
+        PacketBufferPool pool = new PacketBufferPool(1, 4, Duration.ofMillis(10));
+        pool.acquire();
+
+        // When / Then
+        assertThrows(PacketStoreFullException.class, pool::acquire);
+    }
+
+    @Test
+    public void testRead_WhenPacketDoesNotFit_ShouldThrowAndReleaseBuffer() {
+        // Given
+        PacketBufferPool pool = new PacketBufferPool(1, 4, Duration.ofSeconds(5));
+
+        // When
+        assertThrows(IOException.class, () -> pool.read(new ByteArrayInputStream(new byte[5])));
+
+        // Then - with a single buffer, this would block if it had not been released
+        ByteBuffer buffer = pool.acquire();
+        assertEquals(4, buffer.remaining());
+    }
+}
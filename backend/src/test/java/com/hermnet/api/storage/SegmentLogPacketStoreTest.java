@@ -0,0 +1,243 @@
+package com.hermnet.api.storage;
+
+import com.hermnet.api.model.Message;
+import com.hermnet.api.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SegmentLogPacketStore.
+ *
+ * Verifies appends and reads, segment rolling and reclamation, that readers
+ * keep a dropped segment open, and recovery of the record index from sealed
+ * and unsealed segments after a restart, reconciled with the stored messages.
+ */
+public class SegmentLogPacketStoreTest {
+
+    private static final String RECIPIENT_HASH = "HNET-TEST-RECIPIENT-HASH";
+
+    @TempDir
+    Path tempDir;
+
+    private MessageRepository messageRepository;
+    private SegmentLogPacketStore packetStore;
+
+    /** Packet references of the saved messages, as the mailbox would hold them. */
+    private final List<String> committedRefs = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        messageRepository = mock(MessageRepository.class);
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setMessageId(1L);
+            committedRefs.add(message.getPacketRef());
+            return message;
+        });
+        when(messageRepository.findDistinctPacketRefs()).thenAnswer(invocation -> List.copyOf(committedRefs));
+        packetStore = newStore();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        packetStore.close();
+    }
+
+    @Test
+    public void testStore_ShouldAppendAndReadBack() throws Exception {
+        // When
+        Message message = store(new byte[] { 1, 2, 3 });
+
+        // Then
+        assertNull(message.getStegoPacket(), "Packet bytes should not be stored in the row");
+        assertEquals(3L, packetStore.size(message));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read(message));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, transfer(message));
+    }
+
+    @Test
+    public void testFullSegment_ShouldRollAndBeDroppedOnceAllRecordsAreDeleted() throws Exception {
+        // Given - each 10 byte packet takes an 18 byte record, two do not fit in 32 bytes
+        Message first = store(new byte[10]);
+        Message second = store(new byte[10]);
+        Path firstSegment = tempDir.resolve("0000000000000001.log");
+
+        assertTrue(first.getPacketRef().startsWith("1:"));
+        assertTrue(second.getPacketRef().startsWith("2:"), "Second packet should go to a new segment");
+
+        // When
+        packetStore.delete(List.of(first.getPacketRef()));
+
+        // Then
+        assertFalse(Files.exists(firstSegment), "Sealed segment without live records should be dropped");
+        assertArrayEquals(new byte[10], read(second));
+    }
+
+    @Test
+    public void testReclaimIdleSegment_ShouldDropActiveSegmentOnlyOnceAllRecordsAreDeleted() throws Exception {
+        // Given
+        setSegmentBytes(1024);
+        Message message = store(new byte[] { 1 });
+        Path segment = tempDir.resolve("0000000000000001.log");
+
+        // When - a live record keeps the segment however long it has been idle
+        packetStore.reclaimIdleSegment();
+
+        // Then
+        assertArrayEquals(new byte[] { 1 }, read(message));
+
+        // When
+        packetStore.delete(List.of(message.getPacketRef()));
+        packetStore.reclaimIdleSegment();
+
+        // Then
+        assertFalse(Files.exists(segment), "Idle segment without live records should be dropped");
+    }
+
+    @Test
+    public void testTransfer_ShouldCompleteWhenSegmentIsDroppedMidway() throws Exception {
+        // Given - a packet filling a whole sealed segment, sent in several chunks
+        setSegmentBytes(20_008);
+        Message message = store(new byte[20_000]);
+        store(new byte[] { 1 });
+        Path segment = tempDir.resolve("0000000000000001.log");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel sink = Channels.newChannel(out);
+        WritableByteChannel target = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws java.io.IOException {
+                // The recipient acknowledges the packet while it is still being sent
+                packetStore.delete(List.of(message.getPacketRef()));
+                return sink.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        // When
+        packetStore.transferTo(message, target);
+
+        // Then
+        assertEquals(20_000, out.size());
+        assertFalse(Files.exists(segment), "Segment should be deleted once the reader is done");
+    }
+
+    @Test
+    public void testRestart_ShouldRebuildIndexFromFootersAndTombstones() throws Exception {
+        // Given
+        setSegmentBytes(1024);
+        Message kept = store(new byte[] { 7, 7 });
+        Message deleted = store(new byte[] { 9 });
+        packetStore.delete(List.of(deleted.getPacketRef()));
+        packetStore.close();
+
+        // When
+        packetStore = newStore();
+
+        // Then
+        assertArrayEquals(new byte[] { 7, 7 }, read(kept));
+
+        packetStore.delete(List.of(kept.getPacketRef()));
+        assertFalse(Files.exists(tempDir.resolve("0000000000000001.log")),
+                "Recovered segment should be dropped once its last live record is deleted");
+    }
+
+    @Test
+    public void testRestart_ShouldTombstoneRecordsNoMessageReferences() throws Exception {
+        // Given - the second packet was appended but its message never committed
+        setSegmentBytes(1024);
+        Message kept = store(new byte[] { 7, 7 });
+        Message orphaned = store(new byte[] { 9 });
+        committedRefs.remove(orphaned.getPacketRef());
+        committedRefs.add("ab/other.pkt");
+        packetStore.close();
+
+        // When
+        packetStore = newStore();
+
+        // Then
+        assertArrayEquals(new byte[] { 7, 7 }, read(kept));
+
+        packetStore.delete(List.of(kept.getPacketRef()));
+        assertFalse(Files.exists(tempDir.resolve("0000000000000001.log")),
+                "Segment should be dropped once its last referenced record is deleted");
+    }
+
+    @Test
+    public void testRestartAfterCrash_ShouldTruncateTornRecordAndKeepCompleteOnes() throws Exception {
+        // Given - a segment that was never sealed, ending with a partial record
+        setSegmentBytes(1024);
+        Message complete = store(new byte[] { 4, 5, 6 });
+        Files.write(tempDir.resolve("0000000000000001.log"), new byte[] { 0x48, 0x4E, 0x50 },
+                StandardOpenOption.APPEND);
+
+        // When - simulate a restart without the shutdown hook
+        packetStore = newStore();
+
+        // Then
+        assertArrayEquals(new byte[] { 4, 5, 6 }, read(complete));
+    }
+
+    private SegmentLogPacketStore newStore() throws Exception {
+        SegmentLogPacketStore store = new SegmentLogPacketStore(messageRepository,
+                new PacketBufferPool(2, 1 << 16, Duration.ofSeconds(5)));
+        ReflectionTestUtils.setField(store, "directory", tempDir.toString());
+        ReflectionTestUtils.setField(store, "segmentBytes", 32L);
+        store.init();
+        return store;
+    }
+
+    private void setSegmentBytes(long segmentBytes) {
+        ReflectionTestUtils.setField(packetStore, "segmentBytes", segmentBytes);
+    }
+
+    private Message store(byte[] packet) {
+        clearInvocations(messageRepository);
+        packetStore.store(RECIPIENT_HASH, new ByteArrayInputStream(packet));
+
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private byte[] read(Message message) throws Exception {
+        try (InputStream in = packetStore.open(message)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] transfer(Message message) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        packetStore.transferTo(message, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+}